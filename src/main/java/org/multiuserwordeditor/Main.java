@@ -1,6 +1,7 @@
 package org.multiuserwordeditor;
 
 import org.multiuserwordeditor.network.NetworkManager;
+import org.multiuserwordeditor.network.ShardRouter;
 import org.multiuserwordeditor.ui.LoginWindow;
 
 import javax.swing.*;
@@ -32,7 +33,8 @@ public class Main {
             // Swing thread'inde çalıştır
             SwingUtilities.invokeLater(() -> {
                 try {
-                    NetworkManager networkManager = new NetworkManager();
+                    // mtp.shards verilmişse dokümanlar birden fazla sunucuya dağıtılır
+                    NetworkManager networkManager = ShardRouter.fromSystemProperties();
                     LoginWindow loginWindow = new LoginWindow(networkManager);
                     loginWindow.setVisible(true);
                     LOGGER.info("Giriş penceresi açıldı");
@@ -9,6 +9,7 @@ import java.lang.StringBuilder;
  */
 public class Message {
     // Mesaj tipleri - kategorilere ayrılmış
+    // NOT: Binary kodlama ordinal kullanır; yeni tipler sadece sona eklenmeli
     public enum MessageType {
         // 1. Bağlantı İşlemleri
         CONNECT, // İstemci -> Sunucu: Bağlantı isteği
@@ -37,22 +38,52 @@ public class Message {
         // 5. Diğer İşlemler
         SAVE, // İstemci -> Sunucu: Kaydetme isteği
         ERROR, // Sunucu -> İstemci: Hata bildirimi
-        FILE_UPDATE // İstemci <-> Sunucu: Dosya güncelleme
-    }
+        FILE_UPDATE, // İstemci <-> Sunucu: Dosya güncelleme
+
+        // 6. Yetenek anlaşmasıyla gelen tipler
+        TEXT_BATCH, // İstemci -> Sunucu: Birleştirilmiş düzenleme listesi ("batch")
+        TEXT_ACK // Sunucu -> İstemci: seq numarasına kadar düzenlemeler uygulandı ("ack")
+    }
+
+    // CONNECT/CONNECT_ACK "caps" alanındaki yetenekler (';' ile ayrılır)
+    public static final String CAPABILITIES_KEY = "caps";
+    public static final String CAPABILITY_SEPARATOR = ";";
+    public static final String CAP_BINARY = "binary";
+    public static final String CAP_ESCAPE = "escape";
+    public static final String CAP_CHUNKED_CONTENT = "chunked";
+    public static final String CAP_ALIAS = "alias";
+    public static final String CAP_BATCH = "batch";
+    public static final String CAP_ACK = "ack";
+    public static final String CAP_RESUME = "resume";
+    public static final String CAP_CORRELATION = "cid";
+    public static final String CAP_OT = "ot";
+    public static final String CAP_CRDT = "crdt";
+
+    // "resume": CONNECT_ACK oturum jetonunu verir, yeniden bağlanırken CONNECT'te geri gönderilir
+    public static final String RESUME_TOKEN_KEY = "resume";
+    public static final String RESUMED_KEY = "resumed";
+
+    // "cid": istekteki korelasyon id'si, sunucu yanıtında (veya ERROR'da) aynen geri döner
+    public static final String CORRELATION_KEY = "cid";
+
+    // "ot": düzenleme çerçevesinin yazıldığı, TEXT_UPDATE / TEXT_ACK / FILE_CONTENT'in ulaştığı doküman revizyonu
+    public static final String REVISION_KEY = "rev";
+
+    // "crdt": eklemenin ilk karakter kimliği ve solundaki karakter ("site.saat"), silinen
+    // kimlik aralıkları ("site.saat+uzunluk;..."), FILE_CONTENT'te koşu iskeleti
+    public static final String CRDT_ID_KEY = "id";
+    public static final String CRDT_ORIGIN_KEY = "origin";
+    public static final String CRDT_IDS_KEY = "ids";
+    public static final String CRDT_RUNS_KEY = "runs";
 
     // Mesaj alanları
     private MessageType type;
     private String userId;
     private String fileId;
-    private Map<String, String> data;
+    private Map<String, String> data; // tipli payload dışındaki (bilinmeyen/eklenti) alanlar
+    private Payload payload;
     private long timestamp;
 
-    // Sabitler
-    private static final String DELIMITER = "|";
-    private static final String MESSAGE_END = "\n";
-    private static final String DATA_SEPARATOR = ",";
-    private static final String KEY_VALUE_SEPARATOR = ":";
-
     // Constructors
     public Message() {
         this.data = new HashMap<>();
@@ -64,6 +95,7 @@ public class Message {
         this.type = type;
         this.userId = userId;
         this.fileId = fileId;
+        this.payload = Payload.forType(type);
     }
     // Message.java'ya eklenecek debug metodları
 
@@ -71,10 +103,7 @@ public class Message {
      * Tüm data key'lerini döndürür - debug için
      */
     public Set<String> getAllDataKeys() {
-        if (data == null) {
-            return new HashSet<>();
-        }
-        return data.keySet();
+        return getAllData().keySet();
     }
 
     public static Message createFileDelete(String userId, String fileId) {
@@ -96,7 +125,11 @@ public class Message {
      * Raw data Map'ini döndürür - debug için
      */
     public Map<String, String> getAllData() {
-        return data != null ? new HashMap<>(data) : new HashMap<>();
+        Map<String, String> all = data != null ? new HashMap<>(data) : new HashMap<>();
+        if (payload != null) {
+            payload.copyTo(all);
+        }
+        return all;
     }
 
     /**
@@ -112,7 +145,7 @@ public class Message {
         sb.append(", data={");
 
         if (data != null) {
-            for (Map.Entry<String, String> entry : data.entrySet()) {
+            for (Map.Entry<String, String> entry : getAllData().entrySet()) {
                 sb.append(entry.getKey()).append("='").append(entry.getValue()).append("', ");
             }
         }
@@ -123,12 +156,21 @@ public class Message {
     // Data ekleme metotları
     public Message addData(String key, String value) {
         if (key != null && value != null) {
-            data.put(key, value);
+            if (payload == null || !payload.set(key, value)) {
+                data.put(key, value);
+            }
         }
         return this;
     }
 
     public Message addData(String key, int value) {
+        if (key != null && payload != null) {
+            int slot = payload.slotOf(key);
+            if (slot >= 0 && payload.isIntSlot(slot)) {
+                payload.setInt(slot, value);
+                return this;
+            }
+        }
         return addData(key, String.valueOf(value));
     }
 
@@ -138,9 +180,36 @@ public class Message {
 
     // Data alma metotları
     public String getData(String key) {
+        if (payload != null) {
+            String value = payload.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
         return data.get(key);
     }
 
+    // Tipli payload erişimi - mesaj tipine uymuyorsa null döner
+    public Payload getPayload() {
+        return payload;
+    }
+
+    public Payload.TextEdit getTextEdit() {
+        return payload instanceof Payload.TextEdit ? (Payload.TextEdit) payload : null;
+    }
+
+    public Payload.FileList getFileList() {
+        return payload instanceof Payload.FileList ? (Payload.FileList) payload : null;
+    }
+
+    public Payload.Content getContent() {
+        return payload instanceof Payload.Content ? (Payload.Content) payload : null;
+    }
+
+    public Payload.Batch getBatch() {
+        return payload instanceof Payload.Batch ? (Payload.Batch) payload : null;
+    }
+
     public Integer getDataAsInt(String key) {
         String value = getData(key);
         if (value == null)
@@ -153,6 +222,22 @@ public class Message {
         }
     }
 
+    /**
+     * "caps" alanında verilen yeteneğin bulunup bulunmadığını kontrol eder
+     */
+    public boolean hasCapability(String capability) {
+        String caps = getData(CAPABILITIES_KEY);
+        if (caps == null || capability == null) {
+            return false;
+        }
+        for (String cap : caps.split(CAPABILITY_SEPARATOR)) {
+            if (capability.equals(cap.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public Boolean getDataAsBoolean(String key) {
         String value = getData(key);
         if (value == null)
@@ -166,12 +251,22 @@ public class Message {
                 .addData("username", username);
     }
 
+    public static Message createConnect(String username, String capabilities) {
+        return createConnect(username)
+                .addData(CAPABILITIES_KEY, capabilities);
+    }
+
     public static Message createConnectAck(String userId, boolean success, String message) {
         return new Message(MessageType.CONNECT_ACK, userId, null)
                 .addData("status", success ? "success" : "fail")
                 .addData("message", message);
     }
 
+    public static Message createConnectAck(String userId, boolean success, String message, String capabilities) {
+        return createConnectAck(userId, success, message)
+                .addData(CAPABILITIES_KEY, capabilities);
+    }
+
     public static Message createDisconnect(String userId, String reason) {
         return new Message(MessageType.DISCONNECT, userId, null)
                 .addData("reason", reason);
@@ -203,29 +298,52 @@ public class Message {
                 .addData("content", content);
     }
 
+    /**
+     * Dokümanın tam içeriği - sunucu mevcut içeriği bununla değiştirir
+     */
+    public static Message createFileUpdate(String userId, String fileId, String content) {
+        return new Message(MessageType.FILE_UPDATE, userId, fileId)
+                .addData("content", content);
+    }
+
     // Factory metotları - Metin Düzenleme İşlemleri
     public static Message createTextInsert(String userId, String fileId, int position, String text) {
         Message message = new Message(MessageType.TEXT_INSERT, userId, fileId);
-        message.addData("position", String.valueOf(position));
+        message.addData("position", position);
         message.addData("text", text);
         return message;
     }
 
     public static Message createTextDelete(String userId, String fileId, int position, int length) {
         Message message = new Message(MessageType.TEXT_DELETE, userId, fileId);
-        message.addData("position", String.valueOf(position));
-        message.addData("length", String.valueOf(length));
+        message.addData("position", position);
+        message.addData("length", length);
         return message;
     }
 
     public static Message createTextUpdate(String userId, String fileId, String operation, int position, String text) {
         Message message = new Message(MessageType.TEXT_UPDATE, userId, fileId);
         message.addData("operation", operation);
-        message.addData("position", String.valueOf(position));
+        message.addData("position", position);
         message.addData("text", text);
         return message;
     }
 
+    /**
+     * ops: Payload.Batch formatında sıralı işlemler, count: işlem sayısı
+     */
+    public static Message createTextBatch(String userId, String fileId, String ops, int count) {
+        Message message = new Message(MessageType.TEXT_BATCH, userId, fileId);
+        message.addData("ops", ops);
+        message.addData("count", count);
+        return message;
+    }
+
+    public static Message createTextAck(String userId, String fileId, int seq) {
+        return new Message(MessageType.TEXT_ACK, userId, fileId)
+                .addData("seq", seq);
+    }
+
     // Factory metotları - Kullanıcı Yönetimi
     public static Message createRegister(String username, String password) {
         return new Message(MessageType.REGISTER, null, null)
@@ -264,121 +382,29 @@ public class Message {
     // Serialize - mesajı string'e çevir
     public String serialize() {
         try {
-            StringBuilder sb = new StringBuilder();
-
-            // TYPE|USER_ID|FILE_ID|DATA|TIMESTAMP\n
-            sb.append(type != null ? type.name() : "NULL").append(DELIMITER);
-            sb.append(userId != null ? userId : "null").append(DELIMITER);
-            sb.append(fileId != null ? fileId : "null").append(DELIMITER);
-            sb.append(serializeData()).append(DELIMITER);
-            sb.append(timestamp).append(MESSAGE_END);
-
-            // UTF-8 olarak kodla
-            return new String(sb.toString().getBytes("UTF-8"), "UTF-8");
+            return MtpCodec.LEGACY.encode(this);
         } catch (Exception e) {
             System.err.println("Mesaj serileştirme hatası: " + e.getMessage());
             return null;
         }
     }
 
-    // Data'yı serialize et: key1:value1,key2:value2
-    private String serializeData() {
-        try {
-            if (data.isEmpty()) {
-                return "empty";
-            }
-
-            StringBuilder sb = new StringBuilder();
-            boolean first = true;
-
-            for (Map.Entry<String, String> entry : data.entrySet()) {
-                if (!first)
-                    sb.append(DATA_SEPARATOR);
-
-                // Key ve value'yu UTF-8 olarak kodla
-                String key = new String(entry.getKey().getBytes("UTF-8"), "UTF-8");
-                String value = entry.getValue() != null ? new String(entry.getValue().getBytes("UTF-8"), "UTF-8") : "";
-
-                sb.append(key).append(KEY_VALUE_SEPARATOR).append(value);
-                first = false;
-            }
-
-            return sb.toString();
-        } catch (Exception e) {
-            System.err.println("Data serileştirme hatası: " + e.getMessage());
-            return "empty";
-        }
-    }
-
     // Deserialize - string'den mesaj oluştur
     public static Message deserialize(String rawMessage) {
-        if (rawMessage == null || rawMessage.trim().isEmpty()) {
-            return null;
-        }
-
-        try {
-            // UTF-8'e dönüştür
-            rawMessage = new String(rawMessage.getBytes("ISO-8859-1"), "UTF-8");
-
-            // \n'i temizle
-            String cleanMessage = rawMessage.trim();
-            if (cleanMessage.endsWith(MESSAGE_END)) {
-                cleanMessage = cleanMessage.substring(0, cleanMessage.length() - 1);
-            }
-
-            // | ile ayır
-            String[] parts = cleanMessage.split("\\" + DELIMITER, 5);
-            if (parts.length != 5) {
-                throw new Exception("Geçersiz mesaj formatı: " + parts.length + " parça");
-            }
-
-            Message message = new Message();
-
-            // MessageType
-            try {
-                message.type = MessageType.valueOf(parts[0]);
-            } catch (IllegalArgumentException e) {
-                throw new Exception("Geçersiz mesaj tipi: " + parts[0]);
-            }
-
-            // User ID
-            message.userId = "null".equals(parts[1]) ? null : parts[1];
-
-            // File ID
-            message.fileId = "null".equals(parts[2]) ? null : parts[2];
-
-            // Data - UTF-8 olarak parse et
-            message.parseData(new String(parts[3].getBytes("UTF-8"), "UTF-8"));
-
-            // Timestamp
-            try {
-                message.timestamp = Long.parseLong(parts[4]);
-            } catch (NumberFormatException e) {
-                message.timestamp = System.currentTimeMillis();
-            }
-
-            return message;
-        } catch (Exception e) {
-            System.err.println("Mesaj parse hatası: " + e.getMessage());
-            e.printStackTrace();
+        if (rawMessage == null || rawMessage.isEmpty()) {
             return null;
         }
+        return MtpCodec.LEGACY.decode(rawMessage);
     }
 
-    // Data string'ini parse et
-    private void parseData(String dataString) {
-        if ("empty".equals(dataString) || dataString.trim().isEmpty()) {
-            return;
-        }
-
-        String[] pairs = dataString.split(DATA_SEPARATOR);
+    // Codec için kopyasız data erişimi (payload alanları hariç)
+    Map<String, String> dataView() {
+        return data;
+    }
 
-        for (String pair : pairs) {
-            String[] keyValue = pair.split(KEY_VALUE_SEPARATOR, 2);
-            if (keyValue.length == 2) {
-                data.put(keyValue[0].trim(), keyValue[1].trim());
-            }
-        }
+    // Codec için: veri bölümünde hiç alan yoksa true
+    boolean hasNoData() {
+        return data.isEmpty() && (payload == null || payload.setCount() == 0);
     }
 
     // Validation
@@ -392,7 +418,15 @@ public class Message {
     }
 
     public void setType(MessageType type) {
+        Payload previous = payload;
         this.type = type;
+        this.payload = Payload.forType(type);
+        if (previous != null) {
+            // Tipli alanları yeni payload'a (veya map'e) taşı
+            Map<String, String> moved = new HashMap<>();
+            previous.copyTo(moved);
+            moved.forEach(this::addData);
+        }
     }
 
     public String getUserId() {
@@ -420,13 +454,13 @@ public class Message {
     }
 
     public Map<String, String> getData() {
-        return new HashMap<>(data);
+        return getAllData();
     }
 
     // Debug
     @Override
     public String toString() {
         return String.format("Message{type=%s, userId='%s', fileId='%s', data=%s, timestamp=%d}",
-                type, userId, fileId, data, timestamp);
+                type, userId, fileId, getAllData(), timestamp);
     }
 }
\ No newline at end of file
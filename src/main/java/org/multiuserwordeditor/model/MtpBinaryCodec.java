@@ -0,0 +1,328 @@
+package org.multiuserwordeditor.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * MTP mesajlarının kompakt ikili (binary) kodlaması. WebSocket binary
+ * frame'leri ile taşınır; CONNECT/CONNECT_ACK'te "binary" yeteneği
+ * anlaşıldığında kullanılır, aksi halde metin protokolü geçerlidir.
+ *
+ * Format:
+ * VERSION(1) | TYPE(1, ordinal) | USER_ID(str) | FILE_ID(str) | TIMESTAMP(varlong)
+ * | DATA_COUNT(varint) | { KEY_TAG(1) [KEY(str)] VALUE(str | zigzag varint) }*
+ *
+ * str = varint(byteLength + 1) + UTF-8 byte'lar; 0 uzunluğu null demektir.
+ * KEY_TAG = (anahtar kodu << 1) | değer türü. Anahtar kodu 0 ise anahtar
+ * açıkça yazılır; tamsayı görünümlü değerler varint olarak gönderilir.
+ *
+ * VERSION 2 ("alias" yeteneği): USER_ID/FILE_ID "#n" takma adlarıyla yazılır,
+ * TIMESTAMP ise oturum başlangıcına göre zigzag varint farktır.
+ */
+public final class MtpBinaryCodec {
+
+    public static final MtpBinaryCodec INSTANCE = new MtpBinaryCodec();
+
+    private static final byte VERSION = 1;
+    private static final byte VERSION_ALIASED = 2;
+
+    private static final int VALUE_STRING = 0;
+    private static final int VALUE_INT = 1;
+
+    // Sık kullanılan anahtarlar - sıra wire formatının parçasıdır
+    private static final String[] KNOWN_KEYS = MtpKeys.WIRE_ORDER;
+
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+
+    private static final int INITIAL_SCRATCH = 256;
+    private static final int MAX_RETAINED_SCRATCH = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer[]> SCRATCH = ThreadLocal
+            .withInitial(() -> new ByteBuffer[] { ByteBuffer.allocate(INITIAL_SCRATCH) });
+
+    private final SessionAliases aliases;
+
+    private MtpBinaryCodec(SessionAliases aliases) {
+        this.aliases = aliases;
+    }
+
+    private MtpBinaryCodec() {
+        this(null);
+    }
+
+    /**
+     * Verilen takma ad tablosunu kullanan kodlayıcı (null ise INSTANCE)
+     */
+    public MtpBinaryCodec withAliases(SessionAliases sessionAliases) {
+        if (sessionAliases == aliases) {
+            return this;
+        }
+        return sessionAliases == null ? INSTANCE : new MtpBinaryCodec(sessionAliases);
+    }
+
+    // ---------------------------------------------------------------- yazma
+
+    /**
+     * Mesajı tam boyutlu, gönderime hazır (flip edilmiş) yeni bir buffer'a kodlar.
+     * WebSocketClient buffer'ı kuyrukta tuttuğu için her gönderim kendi kopyasını alır.
+     */
+    public ByteBuffer encode(Message message) {
+        ByteBuffer[] holder = SCRATCH.get();
+        while (true) {
+            ByteBuffer scratch = holder[0];
+            scratch.clear();
+            try {
+                encode(message, scratch);
+                scratch.flip();
+                ByteBuffer out = ByteBuffer.allocate(scratch.remaining());
+                out.put(scratch).flip();
+                if (scratch.capacity() > MAX_RETAINED_SCRATCH) {
+                    holder[0] = ByteBuffer.allocate(INITIAL_SCRATCH);
+                }
+                return out;
+            } catch (java.nio.BufferOverflowException e) {
+                holder[0] = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Mesajı verilen buffer'a yazar.
+     *
+     * @throws java.nio.BufferOverflowException buffer yetersizse
+     */
+    public void encode(Message message, ByteBuffer out) {
+        out.put(aliases != null ? VERSION_ALIASED : VERSION);
+        out.put((byte) (message.getType() != null ? message.getType().ordinal() : 0xFF));
+        if (aliases != null) {
+            putString(out, aliases.compactUser(message.getUserId()));
+            putString(out, aliases.compactFile(message.getFileId()));
+            putVarLong(out, zigZag(message.getTimestamp() - aliases.getEpoch()));
+        } else {
+            putString(out, message.getUserId());
+            putString(out, message.getFileId());
+            putVarLong(out, message.getTimestamp());
+        }
+
+        Map<String, String> data = message.dataView();
+        Payload payload = message.getPayload();
+        putVarLong(out, data.size() + (payload != null ? payload.setCount() : 0));
+
+        if (payload != null) {
+            for (int slot = 0; slot < payload.slotCount(); slot++) {
+                if (!payload.isSet(slot)) {
+                    continue;
+                }
+                int keyCode = keyCode(payload.key(slot));
+                if (payload.isIntSlot(slot)) {
+                    out.put((byte) ((keyCode << 1) | VALUE_INT));
+                    if (keyCode == 0) {
+                        putString(out, payload.key(slot));
+                    }
+                    putVarLong(out, zigZag(payload.intValue(slot)));
+                } else {
+                    out.put((byte) ((keyCode << 1) | VALUE_STRING));
+                    if (keyCode == 0) {
+                        putString(out, payload.key(slot));
+                    }
+                    putString(out, payload.textValue(slot));
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            int keyCode = keyCode(entry.getKey());
+            String value = entry.getValue() != null ? entry.getValue() : "";
+            long intValue = parseCanonicalInt(value);
+            boolean asInt = intValue != Long.MIN_VALUE;
+
+            out.put((byte) ((keyCode << 1) | (asInt ? VALUE_INT : VALUE_STRING)));
+            if (keyCode == 0) {
+                putString(out, entry.getKey());
+            }
+            if (asInt) {
+                putVarLong(out, zigZag(intValue));
+            } else {
+                putString(out, value);
+            }
+        }
+    }
+
+    private static int keyCode(String key) {
+        for (int i = 1; i < KNOWN_KEYS.length; i++) {
+            if (KNOWN_KEYS[i].equals(key)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Değer Integer.toString() ile birebir geri üretilebiliyorsa sayıyı, değilse
+     * Long.MIN_VALUE döndürür ("007" gibi değerler metin olarak kalır).
+     */
+    private static long parseCanonicalInt(String value) {
+        int length = value.length();
+        if (length == 0 || length > 11) {
+            return Long.MIN_VALUE;
+        }
+        int i = value.charAt(0) == '-' ? 1 : 0;
+        if (i == length || (value.charAt(i) == '0' && length > i + 1) || (i == 1 && value.charAt(1) == '0')) {
+            return Long.MIN_VALUE;
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            result = result * 10 + (c - '0');
+        }
+        result = value.charAt(0) == '-' ? -result : result;
+        return result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE ? result : Long.MIN_VALUE;
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.put((byte) 0);
+            return;
+        }
+        putVarLong(out, utf8Length(value) + 1L);
+        MtpCodec.putUtf8(value, out);
+    }
+
+    private static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // ---------------------------------------------------------------- okuma
+
+    /**
+     * İkili çerçeveyi çözer; bozuk veya bilinmeyen sürümde null döner.
+     */
+    public Message decode(ByteBuffer frame) {
+        if (frame == null || !frame.hasRemaining()) {
+            return null;
+        }
+
+        ByteBuffer in = frame.duplicate();
+        try {
+            byte version = in.get();
+            if (version != VERSION && (version != VERSION_ALIASED || aliases == null)) {
+                System.err.println("Binary mesaj parse hatası: Desteklenmeyen sürüm " + version);
+                return null;
+            }
+
+            int typeIndex = in.get() & 0xFF;
+            if (typeIndex >= TYPES.length) {
+                System.err.println("Binary mesaj parse hatası: Geçersiz mesaj tipi " + typeIndex);
+                return null;
+            }
+
+            Message message;
+            if (version == VERSION_ALIASED) {
+                message = new Message(TYPES[typeIndex],
+                        aliases.expandUser(getString(in)), aliases.expandFile(getString(in)));
+                message.setTimestamp(aliases.getEpoch() + unZigZag(getVarLong(in)));
+            } else {
+                message = new Message(TYPES[typeIndex], getString(in), getString(in));
+                message.setTimestamp(getVarLong(in));
+            }
+
+            long count = getVarLong(in);
+            for (long i = 0; i < count; i++) {
+                int tag = in.get() & 0xFF;
+                int keyCode = tag >>> 1;
+                String key = keyCode == 0 ? getString(in)
+                        : keyCode < KNOWN_KEYS.length ? KNOWN_KEYS[keyCode] : null;
+                if (key == null) {
+                    System.err.println("Binary mesaj parse hatası: Bilinmeyen anahtar kodu " + keyCode);
+                    return null;
+                }
+
+                if ((tag & 1) == VALUE_INT) {
+                    long value = unZigZag(getVarLong(in));
+                    Payload payload = message.getPayload();
+                    int slot = payload != null ? payload.slotOf(key) : -1;
+                    if (slot >= 0 && payload.isIntSlot(slot) && value == (int) value) {
+                        payload.setInt(slot, (int) value);
+                    } else {
+                        message.addData(key, Long.toString(value));
+                    }
+                } else {
+                    message.addData(key, getString(in));
+                }
+            }
+            return message;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Binary mesaj parse hatası: Eksik çerçeve");
+            return null;
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        long encoded = getVarLong(in);
+        if (encoded == 0) {
+            return null;
+        }
+        int length = (int) (encoded - 1);
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+}
@@ -0,0 +1,672 @@
+package org.multiuserwordeditor.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MTP metin çerçeveleri için tek geçişli (single-pass) okuyucu/yazıcı.
+ * Format: TYPE|USER_ID|FILE_ID|DATA_FIELD1:VALUE1,FIELD2:VALUE2|TIMESTAMP\n
+ *
+ * Çözümleme regex, split() veya ara dizi kullanmaz; çerçeve bir imleçle bir kez
+ * taranır. Mesaj başına ayırma (allocation) bütçesi: Message + data map'i,
+ * başlıktaki her dolu USER_ID/FILE_ID için bir String ve her data çifti için
+ * anahtar/değer String'leri. TYPE, TIMESTAMP, bilinen anahtarlar ve Payload'un
+ * sayısal alanları (position, length) hiç String üretmeden çözülür.
+ *
+ * ESCAPED modunda ("escape" yeteneği) data bölümündeki \ , : | karakterleri
+ * ters bölü ile kaçırılır ve satır sonları \n, \r, \t olarak yazılır; böylece
+ * herhangi bir metin tek bir alanda taşınabilir ve değerler kırpılmaz.
+ *
+ * withAliases() ile bağlantıya özel SessionAliases tablosu takılırsa başlıktaki
+ * id'ler "#n" takma adlarıyla, zaman damgası "+fark" olarak yazılır/okunur.
+ */
+public final class MtpCodec {
+
+    /** Klasik metin protokolü - Message.serialize()/deserialize() bunu kullanır */
+    public static final MtpCodec LEGACY = new MtpCodec(false);
+
+    /** Kaçış dizili (escaped) data bölümü - "escape" yeteneği anlaşıldığında */
+    public static final MtpCodec ESCAPED = new MtpCodec(true);
+
+    private static final char DELIMITER = '|';
+    private static final char MESSAGE_END = '\n';
+    private static final char DATA_SEPARATOR = ',';
+    private static final char KEY_VALUE_SEPARATOR = ':';
+    private static final String NULL_FIELD = "null";
+    private static final String EMPTY_DATA = "empty";
+    private static final char ESCAPE = '\\';
+
+    // TYPE adları uzunluğa göre gruplanır; eşleştirme birkaç aday ile sınırlı kalır
+    private static final Message.MessageType[][] TYPES_BY_LENGTH = groupTypesByLength();
+
+    // Büyük FILE_CONTENT mesajlarından sonra tampon şişmesin
+    private static final int MAX_RETAINED_SCRATCH = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final boolean escaping;
+    private final SessionAliases aliases;
+
+    private MtpCodec(boolean escaping, SessionAliases aliases) {
+        this.escaping = escaping;
+        this.aliases = aliases;
+    }
+
+    private MtpCodec(boolean escaping) {
+        this(escaping, null);
+    }
+
+    public boolean isEscaping() {
+        return escaping;
+    }
+
+    /**
+     * Aynı kaçış ayarıyla, verilen takma ad tablosunu kullanan kodlayıcı
+     * (null verilirse takma adsız temel kodlayıcı)
+     */
+    public MtpCodec withAliases(SessionAliases sessionAliases) {
+        if (sessionAliases == aliases) {
+            return this;
+        }
+        if (sessionAliases == null) {
+            return escaping ? ESCAPED : LEGACY;
+        }
+        return new MtpCodec(escaping, sessionAliases);
+    }
+
+    // ---------------------------------------------------------------- okuma
+
+    /**
+     * Metin çerçevesini çözer. Geçersiz çerçevede null döner.
+     */
+    public Message decode(CharSequence frame) {
+        if (frame == null) {
+            return null;
+        }
+        return decode(new CharSource(frame));
+    }
+
+    /**
+     * UTF-8 kodlu çerçeveyi doğrudan byte'lar üzerinden çözer.
+     * Buffer'ın position/limit değerleri değiştirilmez.
+     */
+    public Message decode(ByteBuffer frame) {
+        if (frame == null) {
+            return null;
+        }
+        return decode(new ByteSource(frame));
+    }
+
+    /**
+     * Sadece TYPE alanına bakar; çerçevenin geri kalanı çözülmez.
+     */
+    public static Message.MessageType peekType(CharSequence frame) {
+        if (frame == null) {
+            return null;
+        }
+        CharSource src = new CharSource(frame);
+        int start = skipLeadingWhitespace(src, 0, src.length());
+        int end = indexOf(src, DELIMITER, start, src.length());
+        return end < 0 ? null : matchType(src, start, end);
+    }
+
+    /**
+     * FILE_LIST_RESP çerçevesi: dosya girdileri '|' ile ayrıldığından DATA alanı
+     * son '|' karakterine kadar uzanır.
+     * Format: FILE_LIST_RESP|userId|fileId|files:id:ad:n|id:ad:n|...|timestamp
+     *
+     * Çerçeve bir kez taranır; girdiler kopyalanmaz, Payload.FileList çerçeve
+     * üzerinde tembel olarak gezinir.
+     */
+    public static Message decodeFileList(CharSequence frame) {
+        if (frame == null) {
+            return null;
+        }
+        CharSource src = new CharSource(frame);
+        int start = skipLeadingWhitespace(src, 0, src.length());
+        int end = skipTrailingWhitespace(src, start, src.length());
+
+        int typeEnd = indexOf(src, DELIMITER, start, end);
+        int userEnd = typeEnd < 0 ? -1 : indexOf(src, DELIMITER, typeEnd + 1, end);
+        int fileEnd = userEnd < 0 ? -1 : indexOf(src, DELIMITER, userEnd + 1, end);
+        if (fileEnd < 0 || matchType(src, start, typeEnd) != Message.MessageType.FILE_LIST_RESP) {
+            System.err.println("ERROR: Geçersiz FILE_LIST_RESP formatı");
+            return null;
+        }
+
+        int lastPipe = end;
+        while (lastPipe > fileEnd && src.charAt(lastPipe - 1) != DELIMITER) {
+            lastPipe--;
+        }
+        lastPipe--;
+
+        int dataStart = fileEnd + 1;
+        int dataEnd = lastPipe > fileEnd ? lastPipe : end;
+        if (regionStartsWith(src, dataStart, dataEnd, MtpKeys.FILES + KEY_VALUE_SEPARATOR)) {
+            dataStart += MtpKeys.FILES.length() + 1;
+        } else if (regionEquals(src, dataStart, dataEnd, EMPTY_DATA)) {
+            dataStart = dataEnd;
+        }
+
+        Message message = new Message(Message.MessageType.FILE_LIST_RESP,
+                headerField(src, typeEnd + 1, userEnd),
+                headerField(src, userEnd + 1, fileEnd));
+        message.getFileList().bind(frame, dataStart, dataEnd);
+        if (lastPipe > fileEnd) {
+            message.setTimestamp(readTimestamp(src, lastPipe + 1, end));
+        }
+        return message;
+    }
+
+    private Message decode(Source src) {
+        int start = skipLeadingWhitespace(src, 0, src.length());
+        int end = skipTrailingWhitespace(src, start, src.length());
+        if (start >= end) {
+            return null;
+        }
+
+        int typeEnd = indexOf(src, DELIMITER, start, end);
+        int userEnd = typeEnd < 0 ? -1 : indexOf(src, DELIMITER, typeEnd + 1, end);
+        int fileEnd = userEnd < 0 ? -1 : indexOf(src, DELIMITER, userEnd + 1, end);
+        int dataEnd = fileEnd < 0 ? -1 : dataIndexOf(src, DELIMITER, fileEnd + 1, end);
+        if (dataEnd < 0) {
+            System.err.println("Mesaj parse hatası: Geçersiz mesaj formatı");
+            return null;
+        }
+
+        Message.MessageType type = matchType(src, start, typeEnd);
+        if (type == null) {
+            System.err.println("Mesaj parse hatası: Geçersiz mesaj tipi: " + src.text(start, typeEnd));
+            return null;
+        }
+
+        String userId = headerField(src, typeEnd + 1, userEnd);
+        String fileId = headerField(src, userEnd + 1, fileEnd);
+        long timestamp = readTimestamp(src, dataEnd + 1, end);
+        if (aliases != null) {
+            userId = aliases.expandUser(userId);
+            fileId = aliases.expandFile(fileId);
+            if (dataEnd + 1 < end && src.charAt(dataEnd + 1) == SessionAliases.DELTA_PREFIX) {
+                timestamp += aliases.getEpoch();
+            }
+        }
+
+        Message message = new Message(type, userId, fileId);
+        readData(src, fileEnd + 1, dataEnd, message);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    private static String headerField(Source src, int from, int to) {
+        if (regionEquals(src, from, to, NULL_FIELD)) {
+            return null;
+        }
+        return src.text(from, to);
+    }
+
+    private void readData(Source src, int from, int to, Message message) {
+        int start = skipLeadingWhitespace(src, from, to);
+        if (start >= to || regionEquals(src, start, to, EMPTY_DATA)) {
+            return;
+        }
+
+        int pairStart = start;
+        while (pairStart <= to) {
+            int pairEnd = dataIndexOf(src, DATA_SEPARATOR, pairStart, to);
+            if (pairEnd < 0) {
+                pairEnd = to;
+            }
+
+            int colon = dataIndexOf(src, KEY_VALUE_SEPARATOR, pairStart, pairEnd);
+            if (colon >= 0) {
+                readPair(src, pairStart, colon, pairEnd, message);
+            }
+            pairStart = pairEnd + 1;
+        }
+    }
+
+    private void readPair(Source src, int keyFrom, int colon, int pairEnd, Message message) {
+        String key = knownKey(src, keyFrom, colon);
+        if (key == null) {
+            key = dataText(src, keyFrom, colon);
+        }
+
+        // Sayısal payload alanları doğrudan int olarak okunur
+        Payload payload = message.getPayload();
+        int slot = payload != null ? payload.slotOf(key) : -1;
+        if (slot >= 0 && payload.isIntSlot(slot)) {
+            long value = readInt(src, colon + 1, pairEnd);
+            if (value != Long.MIN_VALUE) {
+                payload.setInt(slot, (int) value);
+                return;
+            }
+        }
+        message.addData(key, dataText(src, colon + 1, pairEnd));
+    }
+
+    // Bilinen anahtarlar için sabit String'i döndürür (kırpma dahil)
+    private static String knownKey(Source src, int from, int to) {
+        from = skipLeadingWhitespace(src, from, to);
+        to = skipTrailingWhitespace(src, from, to);
+        for (int i = 1; i < MtpKeys.WIRE_ORDER.length; i++) {
+            if (regionEquals(src, from, to, MtpKeys.WIRE_ORDER[i])) {
+                return MtpKeys.WIRE_ORDER[i];
+            }
+        }
+        return null;
+    }
+
+    // int aralığındaki ondalık sayıyı okur; geçersizse Long.MIN_VALUE
+    private static long readInt(Source src, int from, int to) {
+        from = skipLeadingWhitespace(src, from, to);
+        to = skipTrailingWhitespace(src, from, to);
+        boolean negative = from < to && src.charAt(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i >= to || to - i > 10) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            char c = src.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        value = negative ? -value : value;
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? value : Long.MIN_VALUE;
+    }
+
+    private String dataText(Source src, int from, int to) {
+        if (!escaping) {
+            from = skipLeadingWhitespace(src, from, to);
+            to = skipTrailingWhitespace(src, from, to);
+            return src.text(from, to);
+        }
+        return indexOf(src, ESCAPE, from, to) < 0 ? src.text(from, to) : src.unescape(from, to);
+    }
+
+    // Data bölümünde ayraç arar; ESCAPED modunda kaçırılmış karakterleri atlar
+    private int dataIndexOf(Source src, char c, int from, int to) {
+        if (!escaping) {
+            return indexOf(src, c, from, to);
+        }
+        for (int i = from; i < to; i++) {
+            char current = src.charAt(i);
+            if (current == ESCAPE) {
+                i++;
+            } else if (current == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Kaçış dizisinin ikinci karakterini gerçek karaktere çevirir
+    private static char unescaped(char c) {
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case '0':
+                return '\0';
+            default:
+                return c;
+        }
+    }
+
+    private static long readTimestamp(Source src, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (src.charAt(i) == '-' || src.charAt(i) == '+')) {
+            negative = src.charAt(i) == '-';
+            i++;
+        }
+        // 18 haneye kadar taşma olmaz; daha uzun değerler geçersiz sayılır
+        if (i >= to || to - i > 18) {
+            return System.currentTimeMillis();
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            char c = src.charAt(i);
+            if (c < '0' || c > '9') {
+                return System.currentTimeMillis();
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static Message.MessageType matchType(Source src, int from, int to) {
+        int length = to - from;
+        if (length >= TYPES_BY_LENGTH.length) {
+            return null;
+        }
+        for (Message.MessageType type : TYPES_BY_LENGTH[length]) {
+            if (regionEquals(src, from, to, type.name())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static Message.MessageType[][] groupTypesByLength() {
+        int maxLength = 0;
+        for (Message.MessageType type : Message.MessageType.values()) {
+            maxLength = Math.max(maxLength, type.name().length());
+        }
+
+        Message.MessageType[][] groups = new Message.MessageType[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++) {
+            final int current = length;
+            groups[length] = java.util.Arrays.stream(Message.MessageType.values())
+                    .filter(type -> type.name().length() == current)
+                    .toArray(Message.MessageType[]::new);
+        }
+        return groups;
+    }
+
+    private static boolean regionEquals(Source src, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (src.charAt(from + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionStartsWith(Source src, int from, int to, String prefix) {
+        return to - from >= prefix.length() && regionEquals(src, from, from + prefix.length(), prefix);
+    }
+
+    private static int indexOf(Source src, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (src.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipLeadingWhitespace(Source src, int from, int to) {
+        while (from < to && src.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int skipTrailingWhitespace(Source src, int from, int to) {
+        while (to > from && src.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    // ---------------------------------------------------------------- yazma
+
+    /**
+     * Mesajı verilen StringBuilder'a ekler (sonundaki \n dahil).
+     */
+    public StringBuilder encode(Message message, StringBuilder out) {
+        Message.MessageType type = message.getType();
+        out.append(type != null ? type.name() : "NULL").append(DELIMITER);
+        if (aliases == null) {
+            appendHeaderField(out, message.getUserId()).append(DELIMITER);
+            appendHeaderField(out, message.getFileId()).append(DELIMITER);
+            appendData(out, message).append(DELIMITER);
+            return out.append(message.getTimestamp()).append(MESSAGE_END);
+        }
+
+        appendHeaderField(out, aliases.compactUser(message.getUserId())).append(DELIMITER);
+        appendHeaderField(out, aliases.compactFile(message.getFileId())).append(DELIMITER);
+        appendData(out, message).append(DELIMITER);
+        long delta = message.getTimestamp() - aliases.getEpoch();
+        if (delta >= 0) {
+            out.append(SessionAliases.DELTA_PREFIX).append(delta);
+        } else {
+            out.append(message.getTimestamp());
+        }
+        return out.append(MESSAGE_END);
+    }
+
+    /**
+     * Mesajı String olarak kodlar. Thread'e ait bir tampon yeniden kullanılır.
+     */
+    public String encode(Message message) {
+        StringBuilder sb = scratch();
+        return encode(message, sb).toString();
+    }
+
+    /**
+     * Mesajı UTF-8 olarak verilen buffer'a yazar ve yazılan byte sayısını döndürür.
+     *
+     * @throws java.nio.BufferOverflowException buffer yetersizse
+     */
+    public int encode(Message message, ByteBuffer out) {
+        StringBuilder sb = scratch();
+        encode(message, sb);
+        return putUtf8(sb, out);
+    }
+
+    private static StringBuilder scratch() {
+        StringBuilder sb = SCRATCH.get();
+        if (sb.capacity() > MAX_RETAINED_SCRATCH) {
+            sb = new StringBuilder(128);
+            SCRATCH.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static StringBuilder appendHeaderField(StringBuilder out, String value) {
+        return out.append(value != null ? value : NULL_FIELD);
+    }
+
+    private StringBuilder appendData(StringBuilder out, Message message) {
+        if (message.hasNoData()) {
+            return out.append(EMPTY_DATA);
+        }
+
+        boolean first = true;
+        Payload payload = message.getPayload();
+        if (payload != null) {
+            for (int slot = 0; slot < payload.slotCount(); slot++) {
+                if (!payload.isSet(slot)) {
+                    continue;
+                }
+                if (!first) {
+                    out.append(DATA_SEPARATOR);
+                }
+                out.append(payload.key(slot)).append(KEY_VALUE_SEPARATOR);
+                if (payload.isIntSlot(slot)) {
+                    out.append(payload.intValue(slot));
+                } else {
+                    appendDataText(out, payload.textValue(slot));
+                }
+                first = false;
+            }
+        }
+
+        for (java.util.Map.Entry<String, String> entry : message.dataView().entrySet()) {
+            if (!first) {
+                out.append(DATA_SEPARATOR);
+            }
+            appendDataText(out, entry.getKey()).append(KEY_VALUE_SEPARATOR);
+            if (entry.getValue() != null) {
+                appendDataText(out, entry.getValue());
+            }
+            first = false;
+        }
+        return out;
+    }
+
+    private StringBuilder appendDataText(StringBuilder out, String text) {
+        if (!escaping) {
+            return out.append(text);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case ESCAPE:
+                case DELIMITER:
+                case DATA_SEPARATOR:
+                case KEY_VALUE_SEPARATOR:
+                    out.append(ESCAPE).append(c);
+                    break;
+                case '\n':
+                    out.append(ESCAPE).append('n');
+                    break;
+                case '\r':
+                    out.append(ESCAPE).append('r');
+                    break;
+                case '\t':
+                    out.append(ESCAPE).append('t');
+                    break;
+                case '\0':
+                    out.append(ESCAPE).append('0');
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out;
+    }
+
+    static int putUtf8(CharSequence cs, ByteBuffer out) {
+        int start = out.position();
+        for (int i = 0; i < cs.length(); i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < cs.length()
+                    && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, cs.charAt(++i));
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return out.position() - start;
+    }
+
+    // ---------------------------------------------------------------- kaynaklar
+
+    /**
+     * Çözücünün okuduğu karakter kaynağı. Ayraçlar ASCII olduğundan UTF-8
+     * byte'ları da aynı tarayıcıyla okunabilir; sadece text() kod çözer.
+     */
+    private interface Source {
+        int length();
+
+        char charAt(int index);
+
+        String text(int from, int to);
+
+        /** Kaçış dizilerini çözerek metni üretir */
+        String unescape(int from, int to);
+    }
+
+    private static final class CharSource implements Source {
+        private final CharSequence chars;
+
+        CharSource(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int length() {
+            return chars.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars.charAt(index);
+        }
+
+        @Override
+        public String text(int from, int to) {
+            if (chars instanceof String) {
+                return ((String) chars).substring(from, to);
+            }
+            return chars.subSequence(from, to).toString();
+        }
+
+        @Override
+        public String unescape(int from, int to) {
+            StringBuilder sb = new StringBuilder(to - from);
+            for (int i = from; i < to; i++) {
+                char c = chars.charAt(i);
+                if (c == ESCAPE && i + 1 < to) {
+                    c = unescaped(chars.charAt(++i));
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class ByteSource implements Source {
+        private final ByteBuffer bytes;
+        private final int base;
+        private final int length;
+
+        ByteSource(ByteBuffer bytes) {
+            this.bytes = bytes;
+            this.base = bytes.position();
+            this.length = bytes.remaining();
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(base + index) & 0xFF);
+        }
+
+        @Override
+        public String text(int from, int to) {
+            if (bytes.hasArray()) {
+                return new String(bytes.array(), bytes.arrayOffset() + base + from, to - from,
+                        StandardCharsets.UTF_8);
+            }
+            byte[] copy = new byte[to - from];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = bytes.get(base + from + i);
+            }
+            return new String(copy, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String unescape(int from, int to) {
+            // Kaçış dizileri ASCII olduğundan byte düzeyinde çözülüp sonra UTF-8'e çevrilir
+            byte[] out = new byte[to - from];
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                byte b = bytes.get(base + i);
+                if (b == ESCAPE && i + 1 < to) {
+                    b = (byte) unescaped((char) (bytes.get(base + ++i) & 0xFF));
+                }
+                out[length++] = b;
+            }
+            return new String(out, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
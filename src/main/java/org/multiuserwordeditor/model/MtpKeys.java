@@ -0,0 +1,53 @@
+package org.multiuserwordeditor.model;
+
+/**
+ * MTP data bölümünde sık kullanılan anahtarlar.
+ * Çözücüler bilinen anahtarlar için yeni String üretmek yerine bu sabitleri kullanır.
+ */
+final class MtpKeys {
+    static final String POSITION = "position";
+    static final String LENGTH = "length";
+    static final String TEXT = "text";
+    static final String USER_ID = "userId";
+    static final String OPERATION = "operation";
+    static final String CONTENT = "content";
+    static final String STATUS = "status";
+    static final String MESSAGE = "message";
+    static final String FILES = "files";
+    static final String NAME = "name";
+    static final String FILENAME = "filename";
+    static final String CREATOR = "creator";
+    static final String USERNAME = "username";
+    static final String PASSWORD = "password";
+    static final String REASON = "reason";
+    static final String CAPS = "caps";
+    static final String CHUNK = "chunk";
+    static final String FINAL = "final";
+    static final String USER_ALIAS = "ua";
+    static final String FILE_ALIAS = "fa";
+    static final String OPS = "ops";
+    static final String COUNT = "count";
+    static final String SEQ = "seq";
+    static final String RESUME = "resume";
+    static final String RESUMED = "resumed";
+    static final String CID = "cid";
+    static final String REV = "rev";
+    static final String ID = "id";
+    static final String ORIGIN = "origin";
+    static final String IDS = "ids";
+    static final String RUNS = "runs";
+
+    // Binary kodlamada anahtar kodu = dizideki indeks - SADECE SONA EKLENİR
+    static final String[] WIRE_ORDER = {
+            null, // 0 = açık anahtar
+            POSITION, LENGTH, TEXT, USER_ID, OPERATION,
+            CONTENT, STATUS, MESSAGE, FILES, NAME,
+            FILENAME, CREATOR, USERNAME, PASSWORD, REASON,
+            CAPS, CHUNK, FINAL, USER_ALIAS, FILE_ALIAS,
+            OPS, COUNT, SEQ, RESUME, RESUMED, CID, REV,
+            ID, ORIGIN, IDS, RUNS
+    };
+
+    private MtpKeys() {
+    }
+}
@@ -0,0 +1,641 @@
+package org.multiuserwordeditor.model;
+
+import java.util.Map;
+
+/**
+ * Mesaj tipine özel, tipli data alanları. Çözücüler bilinen alanları doğrudan
+ * buraya yazar (sayılar ilkel int olarak); bilinmeyen/eklenti alanları
+ * Message içindeki map'te kalır.
+ *
+ * Alanlar sabit "slot"lar olarak tanımlanır; böylece kodlayıcılar ara nesne
+ * üretmeden tüm dolu alanları gezebilir.
+ */
+public abstract class Payload {
+    public static final int NOT_SET = -1;
+
+    /**
+     * Mesaj tipi için uygun payload'ı üretir; tipli payload'ı olmayan tiplerde null.
+     */
+    static Payload forType(Message.MessageType type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case TEXT_INSERT:
+            case TEXT_DELETE:
+            case TEXT_UPDATE:
+                return new TextEdit(type);
+            case FILE_LIST_RESP:
+                return new FileList();
+            case FILE_CONTENT:
+                return new Content();
+            case TEXT_BATCH:
+                return new Batch();
+            default:
+                return null;
+        }
+    }
+
+    // ---------------------------------------------------------------- slot erişimi
+
+    abstract int slotCount();
+
+    abstract String key(int slot);
+
+    abstract boolean isIntSlot(int slot);
+
+    abstract boolean isSet(int slot);
+
+    abstract int intValue(int slot);
+
+    abstract String textValue(int slot);
+
+    abstract void setInt(int slot, int value);
+
+    abstract void setText(int slot, String value);
+
+    /**
+     * Anahtarın slot indeksini döndürür, tipli alan değilse -1.
+     */
+    int slotOf(String key) {
+        for (int i = 0; i < slotCount(); i++) {
+            if (key(i).equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * String değeri tipli alana yazar. Alan bilinmiyorsa veya sayı alanına
+     * sayı olmayan bir değer geldiyse false döner (değer map'e gider).
+     */
+    boolean set(String key, String value) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        if (!isIntSlot(slot)) {
+            setText(slot, value);
+            return true;
+        }
+        try {
+            setInt(slot, Integer.parseInt(value.trim()));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Map uyumluluğu için alanı String olarak döndürür.
+     */
+    String get(String key) {
+        int slot = slotOf(key);
+        if (slot < 0 || !isSet(slot)) {
+            return null;
+        }
+        return isIntSlot(slot) ? String.valueOf(intValue(slot)) : textValue(slot);
+    }
+
+    int setCount() {
+        int count = 0;
+        for (int i = 0; i < slotCount(); i++) {
+            if (isSet(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void copyTo(Map<String, String> target) {
+        for (int i = 0; i < slotCount(); i++) {
+            if (isSet(i)) {
+                target.put(key(i), isIntSlot(i) ? String.valueOf(intValue(i)) : textValue(i));
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- tipler
+
+    /**
+     * TEXT_INSERT / TEXT_DELETE / TEXT_UPDATE alanları
+     */
+    public static final class TextEdit extends Payload {
+        private static final String[] KEYS = { MtpKeys.OPERATION, MtpKeys.POSITION, MtpKeys.LENGTH, MtpKeys.TEXT };
+        private static final int OPERATION = 0;
+        private static final int POSITION = 1;
+        private static final int LENGTH = 2;
+        private static final int TEXT = 3;
+
+        private final Message.MessageType type;
+        private String operation;
+        private int position = NOT_SET;
+        private int length = NOT_SET;
+        private String text;
+
+        TextEdit(Message.MessageType type) {
+            this.type = type;
+        }
+
+        public boolean isInsert() {
+            return type == Message.MessageType.TEXT_INSERT || "insert".equalsIgnoreCase(operation);
+        }
+
+        public boolean isDelete() {
+            return type == Message.MessageType.TEXT_DELETE || "delete".equalsIgnoreCase(operation);
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        int slotCount() {
+            return KEYS.length;
+        }
+
+        @Override
+        String key(int slot) {
+            return KEYS[slot];
+        }
+
+        @Override
+        boolean isIntSlot(int slot) {
+            return slot == POSITION || slot == LENGTH;
+        }
+
+        @Override
+        boolean isSet(int slot) {
+            switch (slot) {
+                case OPERATION:
+                    return operation != null;
+                case POSITION:
+                    return position != NOT_SET;
+                case LENGTH:
+                    return length != NOT_SET;
+                default:
+                    return text != null;
+            }
+        }
+
+        @Override
+        int intValue(int slot) {
+            return slot == POSITION ? position : length;
+        }
+
+        @Override
+        String textValue(int slot) {
+            return slot == OPERATION ? operation : text;
+        }
+
+        @Override
+        void setInt(int slot, int value) {
+            if (slot == POSITION) {
+                position = value;
+            } else {
+                length = value;
+            }
+        }
+
+        @Override
+        void setText(int slot, String value) {
+            if (slot == OPERATION) {
+                operation = value;
+            } else {
+                text = value;
+            }
+        }
+    }
+
+    /**
+     * FILE_LIST_RESP alanları. Liste kopyalanmadan kaynak çerçeve üzerinde
+     * tutulur; girdiler entries() ile gezinirken tek tek çözülür.
+     */
+    public static final class FileList extends Payload {
+        private static final char ENTRY_SEPARATOR = '|';
+        private static final char FIELD_SEPARATOR = ':';
+
+        private CharSequence source;
+        private int from;
+        private int to;
+
+        /**
+         * Ham dosya listesi: id:ad:kullanıcıSayısı|id:ad:kullanıcıSayısı|...
+         * (uyumluluk için - büyük listelerde entries() tercih edilmeli)
+         */
+        public String getFiles() {
+            return source != null ? source.subSequence(from, to).toString() : null;
+        }
+
+        /**
+         * Girdileri tembel (lazy) olarak çözen, her çağrıda baştan başlayan görünüm
+         */
+        public Iterable<Entry> entries() {
+            return EntryIterator::new;
+        }
+
+        // Çözücü çerçevenin ilgili bölgesini kopyalamadan bağlar
+        void bind(CharSequence source, int from, int to) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        int slotCount() {
+            return 1;
+        }
+
+        @Override
+        String key(int slot) {
+            return MtpKeys.FILES;
+        }
+
+        @Override
+        boolean isIntSlot(int slot) {
+            return false;
+        }
+
+        @Override
+        boolean isSet(int slot) {
+            return source != null;
+        }
+
+        @Override
+        int intValue(int slot) {
+            throw new IllegalArgumentException("files is not numeric");
+        }
+
+        @Override
+        String textValue(int slot) {
+            return getFiles();
+        }
+
+        @Override
+        void setInt(int slot, int value) {
+            throw new IllegalArgumentException("files is not numeric");
+        }
+
+        @Override
+        void setText(int slot, String value) {
+            bind(value, 0, value.length());
+        }
+
+        /**
+         * Tek dosya girdisi
+         */
+        public static final class Entry {
+            private final String fileId;
+            private final String fileName;
+            private final int userCount;
+
+            Entry(String fileId, String fileName, int userCount) {
+                this.fileId = fileId;
+                this.fileName = fileName;
+                this.userCount = userCount;
+            }
+
+            public String getFileId() {
+                return fileId;
+            }
+
+            public String getFileName() {
+                return fileName;
+            }
+
+            public int getUserCount() {
+                return userCount;
+            }
+        }
+
+        private final class EntryIterator implements java.util.Iterator<Entry> {
+            private int cursor = from;
+            private Entry next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && source != null && cursor < to) {
+                    int entryEnd = indexOf(ENTRY_SEPARATOR, cursor, to);
+                    next = parseEntry(cursor, entryEnd);
+                    cursor = entryEnd + 1;
+                }
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new java.util.NoSuchElementException();
+                }
+                Entry entry = next;
+                next = null;
+                return entry;
+            }
+
+            // id:ad[:kullanıcıSayısı] - en az iki alan yoksa girdi atlanır
+            private Entry parseEntry(int start, int end) {
+                start = skipWhitespace(start, end);
+                end = trimEnd(start, end);
+                int idEnd = indexOf(FIELD_SEPARATOR, start, end);
+                if (start >= end || idEnd == end) {
+                    if (start < end) {
+                        System.err.println("WARNING: Invalid file entry format: '" + source.subSequence(start, end) + "'");
+                    }
+                    return null;
+                }
+                int nameEnd = indexOf(FIELD_SEPARATOR, idEnd + 1, end);
+                int countEnd = nameEnd < end ? indexOf(FIELD_SEPARATOR, nameEnd + 1, end) : end;
+
+                return new Entry(text(start, idEnd), text(idEnd + 1, nameEnd),
+                        nameEnd < end ? parseCount(nameEnd + 1, countEnd) : 0);
+            }
+
+            private int parseCount(int start, int end) {
+                start = skipWhitespace(start, end);
+                end = trimEnd(start, end);
+                int count = 0;
+                for (int i = start; i < end; i++) {
+                    char c = source.charAt(i);
+                    if (c < '0' || c > '9') {
+                        return 0;
+                    }
+                    count = count * 10 + (c - '0');
+                }
+                return count;
+            }
+
+            private String text(int start, int end) {
+                start = skipWhitespace(start, end);
+                end = trimEnd(start, end);
+                return source.subSequence(start, end).toString();
+            }
+
+            private int indexOf(char c, int start, int end) {
+                for (int i = start; i < end; i++) {
+                    if (source.charAt(i) == c) {
+                        return i;
+                    }
+                }
+                return end;
+            }
+
+            private int skipWhitespace(int start, int end) {
+                while (start < end && source.charAt(start) <= ' ') {
+                    start++;
+                }
+                return start;
+            }
+
+            private int trimEnd(int start, int end) {
+                while (end > start && source.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                return end;
+            }
+        }
+    }
+
+    /**
+     * FILE_CONTENT alanları
+     */
+    public static final class Content extends Payload {
+        private static final String[] KEYS = { MtpKeys.CONTENT, MtpKeys.FILENAME, MtpKeys.CHUNK, MtpKeys.FINAL };
+        private static final int CONTENT = 0;
+        private static final int FILENAME = 1;
+        private static final int CHUNK = 2;
+
+        private String content;
+        private String filename;
+        private int chunk = NOT_SET;
+        private String finalFlag;
+
+        public String getContent() {
+            return content;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        /**
+         * Parçalı ("chunked") aktarımda 0'dan başlayan parça numarası; tek parça ise NOT_SET
+         */
+        public int getChunk() {
+            return chunk;
+        }
+
+        public boolean isChunked() {
+            return chunk != NOT_SET;
+        }
+
+        /**
+         * Dokümanın son parçası mı (parçasız aktarım her zaman son parçadır)
+         */
+        public boolean isLastChunk() {
+            return !isChunked() || "true".equalsIgnoreCase(finalFlag);
+        }
+
+        @Override
+        int slotCount() {
+            return KEYS.length;
+        }
+
+        @Override
+        String key(int slot) {
+            return KEYS[slot];
+        }
+
+        @Override
+        boolean isIntSlot(int slot) {
+            return slot == CHUNK;
+        }
+
+        @Override
+        boolean isSet(int slot) {
+            return slot == CHUNK ? chunk != NOT_SET : textValue(slot) != null;
+        }
+
+        @Override
+        int intValue(int slot) {
+            if (slot != CHUNK) {
+                throw new IllegalArgumentException(KEYS[slot] + " is not numeric");
+            }
+            return chunk;
+        }
+
+        @Override
+        String textValue(int slot) {
+            switch (slot) {
+                case CONTENT:
+                    return content;
+                case FILENAME:
+                    return filename;
+                default:
+                    return finalFlag;
+            }
+        }
+
+        @Override
+        void setInt(int slot, int value) {
+            if (slot != CHUNK) {
+                throw new IllegalArgumentException(KEYS[slot] + " is not numeric");
+            }
+            chunk = value;
+        }
+
+        @Override
+        void setText(int slot, String value) {
+            switch (slot) {
+                case CONTENT:
+                    content = value;
+                    break;
+                case FILENAME:
+                    filename = value;
+                    break;
+                default:
+                    finalFlag = value;
+            }
+        }
+    }
+
+    /**
+     * TEXT_BATCH alanları: aynı dokümana ait sıralı düzenleme listesi.
+     *
+     * ops = { TÜR POZİSYON ':' UZUNLUK ':' [METİN] }*
+     * TÜR 'i' (ekleme) veya 'd' (silme); eklemede METİN tam UZUNLUK karakterdir
+     * (UTF-16 birimi, pozisyonlarla aynı ölçü), silmede metin yoktur.
+     * Örnek: i10:5:Merhad14:1:i14:2:ba  ->  10'a "Merha" ekle, 14'ten 1 sil, 14'e "ba" ekle
+     */
+    public static final class Batch extends Payload {
+        public static final char INSERT = 'i';
+        public static final char DELETE = 'd';
+
+        private static final String[] KEYS = { MtpKeys.OPS, MtpKeys.COUNT };
+        private static final int OPS = 0;
+        private static final int COUNT = 1;
+        private static final char FIELD_END = ':';
+
+        private String ops;
+        private int count = NOT_SET;
+
+        public String getOps() {
+            return ops;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Ekleme işlemini ops formatında yazar
+         */
+        public static StringBuilder appendInsert(StringBuilder ops, int position, CharSequence text) {
+            return ops.append(INSERT).append(position).append(FIELD_END)
+                    .append(text.length()).append(FIELD_END).append(text);
+        }
+
+        /**
+         * Silme işlemini ops formatında yazar
+         */
+        public static StringBuilder appendDelete(StringBuilder ops, int position, int length) {
+            return ops.append(DELETE).append(position).append(FIELD_END)
+                    .append(length).append(FIELD_END);
+        }
+
+        /**
+         * İşlemleri sırayla ziyaretçiye verir; bozuk girdide IllegalArgumentException
+         */
+        public void forEachOp(OpVisitor visitor) {
+            if (ops == null) {
+                return;
+            }
+            int i = 0;
+            while (i < ops.length()) {
+                char kind = ops.charAt(i);
+                int positionEnd = ops.indexOf(FIELD_END, i + 1);
+                int lengthEnd = positionEnd < 0 ? -1 : ops.indexOf(FIELD_END, positionEnd + 1);
+                if (lengthEnd < 0 || (kind != INSERT && kind != DELETE)) {
+                    throw new IllegalArgumentException("Invalid batch op at " + i);
+                }
+                int position = Integer.parseInt(ops, i + 1, positionEnd, 10);
+                int length = Integer.parseInt(ops, positionEnd + 1, lengthEnd, 10);
+                i = lengthEnd + 1;
+
+                if (kind == INSERT) {
+                    if (i + length > ops.length()) {
+                        throw new IllegalArgumentException("Truncated batch insert at " + position);
+                    }
+                    visitor.insert(position, ops.substring(i, i + length));
+                    i += length;
+                } else {
+                    visitor.delete(position, length);
+                }
+            }
+        }
+
+        public interface OpVisitor {
+            void insert(int position, String text);
+
+            void delete(int position, int length);
+        }
+
+        @Override
+        int slotCount() {
+            return KEYS.length;
+        }
+
+        @Override
+        String key(int slot) {
+            return KEYS[slot];
+        }
+
+        @Override
+        boolean isIntSlot(int slot) {
+            return slot == COUNT;
+        }
+
+        @Override
+        boolean isSet(int slot) {
+            return slot == COUNT ? count != NOT_SET : ops != null;
+        }
+
+        @Override
+        int intValue(int slot) {
+            if (slot != COUNT) {
+                throw new IllegalArgumentException("ops is not numeric");
+            }
+            return count;
+        }
+
+        @Override
+        String textValue(int slot) {
+            return ops;
+        }
+
+        @Override
+        void setInt(int slot, int value) {
+            if (slot != COUNT) {
+                throw new IllegalArgumentException("ops is not numeric");
+            }
+            count = value;
+        }
+
+        @Override
+        void setText(int slot, String value) {
+            ops = value;
+        }
+    }
+}
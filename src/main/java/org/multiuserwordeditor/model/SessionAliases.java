@@ -0,0 +1,115 @@
+package org.multiuserwordeditor.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bağlantıya özel kısa takma adlar ("alias" yeteneği).
+ *
+ * Sunucu LOGIN_ACK'te kullanıcıya ("ua:3"), FILE_CONTENT'te dokümana ("fa:7")
+ * sayısal bir takma ad verir. Bundan sonra iki taraf da başlıktaki USER_ID /
+ * FILE_ID alanına tam id yerine "#3" / "#7" yazar. TIMESTAMP alanı CONNECT_ACK
+ * zamanına göre fark olarak "+1520" şeklinde yazılır.
+ *
+ * Kodlayıcılar bu tabloyu kullanarak takma adları yazarken kısaltır, okurken
+ * açar; handler'lar her zaman tam id ve mutlak zaman görür.
+ */
+public final class SessionAliases {
+    public static final String USER_ALIAS_KEY = MtpKeys.USER_ALIAS;
+    public static final String FILE_ALIAS_KEY = MtpKeys.FILE_ALIAS;
+
+    static final char ALIAS_PREFIX = '#';
+    static final char DELTA_PREFIX = '+';
+
+    private final long epoch;
+
+    // id -> "#n" (yazarken yeni String üretilmesin diye tel formu saklanır) ve tersi
+    private final Map<String, String> userAliasById = new ConcurrentHashMap<>();
+    private final Map<String, String> userIdByAlias = new ConcurrentHashMap<>();
+    private final Map<String, String> fileAliasById = new ConcurrentHashMap<>();
+    private final Map<String, String> fileIdByAlias = new ConcurrentHashMap<>();
+
+    /**
+     * @param epoch oturum başlangıcı (CONNECT_ACK zaman damgası) - zaman farklarının tabanı
+     */
+    public SessionAliases(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Mesajdaki "ua" / "fa" alanlarını başlıktaki tam id'lere bağlar.
+     */
+    public void learn(Message message) {
+        bind(message.getData(USER_ALIAS_KEY), message.getUserId(), userAliasById, userIdByAlias);
+        bind(message.getData(FILE_ALIAS_KEY), message.getFileId(), fileAliasById, fileIdByAlias);
+    }
+
+    public boolean hasUserAlias(String userId) {
+        return userId != null && userAliasById.containsKey(userId);
+    }
+
+    private static void bind(String alias, String id, Map<String, String> aliasById, Map<String, String> idByAlias) {
+        if (alias == null || id == null || id.isEmpty() || id.charAt(0) == ALIAS_PREFIX) {
+            return;
+        }
+        alias = alias.trim();
+        if (alias.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < alias.length(); i++) {
+            if (alias.charAt(i) < '0' || alias.charAt(i) > '9') {
+                System.err.println("Geçersiz takma ad: " + alias + " (" + id + ")");
+                return;
+            }
+        }
+
+        String wire = ALIAS_PREFIX + alias;
+        String previous = idByAlias.put(wire, id);
+        if (previous != null && !previous.equals(id)) {
+            aliasById.remove(previous);
+        }
+        aliasById.put(id, wire);
+    }
+
+    // ---------------------------------------------------------------- kodlayıcılar için
+
+    String compactUser(String userId) {
+        return compact(userId, userAliasById);
+    }
+
+    String compactFile(String fileId) {
+        return compact(fileId, fileAliasById);
+    }
+
+    String expandUser(String field) {
+        return expand(field, userIdByAlias);
+    }
+
+    String expandFile(String field) {
+        return expand(field, fileIdByAlias);
+    }
+
+    private static String compact(String id, Map<String, String> aliasById) {
+        if (id == null) {
+            return null;
+        }
+        String alias = aliasById.get(id);
+        return alias != null ? alias : id;
+    }
+
+    private static String expand(String field, Map<String, String> idByAlias) {
+        if (field == null || field.isEmpty() || field.charAt(0) != ALIAS_PREFIX) {
+            return field;
+        }
+        String id = idByAlias.get(field);
+        if (id == null) {
+            System.err.println("Bilinmeyen takma ad: " + field);
+            return field;
+        }
+        return id;
+    }
+}
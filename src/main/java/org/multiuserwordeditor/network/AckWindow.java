@@ -0,0 +1,187 @@
+package org.multiuserwordeditor.network;
+
+import org.multiuserwordeditor.model.Message;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * - Doküman başına, sunucu onaylı (TEXT_ACK) akış kontrol penceresi ("ack" yeteneği)
+ * - Her düzenleme çerçevesi doküman içinde artan "seq" numarası alır; en fazla
+ *   windowSize düzenleme onaysız yolda olabilir, fazlası sırayla bekletilir
+ * - TEXT_ACK kümülatiftir: seq:n, n dahil önceki tüm düzenlemeleri onaylar
+ * - Bekleyen düzenlemesi olan dokümanın diğer mesajları (SAVE vb.) sırayı
+ *   bozmamak için düzenlemelerin arkasında bekler ama pencereden yer tüketmez
+ */
+public class AckWindow {
+    private static final Logger LOGGER = Logger.getLogger(AckWindow.class.getName());
+
+    public static final String SEQ_KEY = "seq";
+    public static final int DEFAULT_WINDOW_SIZE = 16;
+
+    private final Consumer<Message> sender;
+    private volatile int windowSize;
+    private final Map<String, DocumentWindow> windows = new ConcurrentHashMap<>();
+
+    // Bağlantı koptuğunda düzenlemeler gönderilmez, "held" içinde birikir
+    private volatile boolean paused;
+
+    public AckWindow(Consumer<Message> sender, int windowSize) {
+        this.sender = sender;
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Mesajı pencereden geçirir. Pencerenin ilgilenmediği mesajlarda (doküman
+     * dışı veya sırası etkilenmeyen) false döner; çağıran mesajı kendisi gönderir.
+     */
+    public boolean submit(Message message) {
+        String fileId = message.getFileId();
+        if (fileId == null) {
+            return false;
+        }
+        boolean edit = isSequenced(message);
+        DocumentWindow window = edit ? windows.computeIfAbsent(fileId, id -> new DocumentWindow())
+                : windows.get(fileId);
+        if (window == null) {
+            return false;
+        }
+
+        synchronized (window) {
+            if (!edit && window.held.isEmpty()) {
+                return false;
+            }
+            window.held.addLast(message);
+            release(window);
+        }
+        return true;
+    }
+
+    /**
+     * TEXT_ACK işleyicisi (socket thread'i)
+     */
+    public void onAck(Message ack) {
+        String fileId = ack.getFileId();
+        Integer seq = ack.getDataAsInt(SEQ_KEY);
+        DocumentWindow window = fileId != null ? windows.get(fileId) : null;
+        if (window == null || seq == null) {
+            LOGGER.fine("Ignoring TEXT_ACK for " + fileId + " seq " + seq);
+            return;
+        }
+
+        synchronized (window) {
+            while (!window.inFlight.isEmpty() && seqOf(window.inFlight.peekFirst()) <= seq) {
+                window.inFlight.pollFirst();
+            }
+            release(window);
+        }
+    }
+
+    // Pencerede yer kaldıkça bekleyenleri sırayla gönderir ("window" kilidi altında)
+    private void release(DocumentWindow window) {
+        while (!paused && !window.held.isEmpty()) {
+            Message next = window.held.peekFirst();
+            if (isSequenced(next)) {
+                if (window.inFlight.size() >= windowSize) {
+                    return;
+                }
+                next.addData(SEQ_KEY, ++window.nextSeq);
+                window.inFlight.addLast(next);
+            }
+            window.held.pollFirst();
+            sender.accept(next);
+        }
+    }
+
+    private static boolean isSequenced(Message message) {
+        Message.MessageType type = message.getType();
+        return type == Message.MessageType.TEXT_INSERT || type == Message.MessageType.TEXT_DELETE
+                || type == Message.MessageType.TEXT_BATCH || type == Message.MessageType.FILE_UPDATE;
+    }
+
+    private static int seqOf(Message message) {
+        Integer seq = message.getDataAsInt(SEQ_KEY);
+        return seq != null ? seq : Integer.MIN_VALUE;
+    }
+
+    /** Bağlantı kapanınca tüm doküman pencereleri sıfırlanır */
+    public void reset() {
+        windows.clear();
+        paused = false;
+    }
+
+    /**
+     * Bağlantı geri gelene kadar gönderimi durdurur; yoldaki ve bekleyen
+     * düzenlemeler korunur
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Oturum devam ettirildikten sonra: onaylanmamış düzenlemeleri aynı seq
+     * numaralarıyla sırayla yeniden gönderir (sunucu seq ile tekrarları ayıklar),
+     * ardından bekleyenleri salar.
+     *
+     * @return yeniden gönderilen düzenleme sayısı
+     */
+    public int resumeAndReplay() {
+        paused = false;
+        int replayed = 0;
+        for (DocumentWindow window : windows.values()) {
+            synchronized (window) {
+                for (Message message : window.inFlight) {
+                    sender.accept(message);
+                    replayed++;
+                }
+                release(window);
+            }
+        }
+        return replayed;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // ---------------------------------------------------------------- göstergeler
+
+    public int getInFlight(String fileId) {
+        DocumentWindow window = windows.get(fileId);
+        if (window == null) {
+            return 0;
+        }
+        synchronized (window) {
+            return window.inFlight.size();
+        }
+    }
+
+    public int getHeld(String fileId) {
+        DocumentWindow window = windows.get(fileId);
+        if (window == null) {
+            return 0;
+        }
+        synchronized (window) {
+            return window.held.size();
+        }
+    }
+
+    private static final class DocumentWindow {
+        int nextSeq;
+        // Gönderilmiş, onay bekleyen düzenlemeler (seq sırasıyla)
+        final ArrayDeque<Message> inFlight = new ArrayDeque<>();
+        // Pencere dolu olduğu için henüz gönderilmemiş mesajlar
+        final ArrayDeque<Message> held = new ArrayDeque<>();
+    }
+}
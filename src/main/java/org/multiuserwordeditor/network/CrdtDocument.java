@@ -0,0 +1,782 @@
+package org.multiuserwordeditor.network;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * - Bir dokümanın istemci tarafı dizi CRDT kopyası ("crdt" yeteneği, RGA)
+ * - Her karakterin değişmez bir kimliği vardır: (Lamport saati, site). Ekleme
+ *   "origin" karakterinin (solundaki karakter, baş için ROOT) hemen sağına, kimliği
+ *   büyük olan eşzamanlı eklemeler atlanarak yerleşir; silinen karakter mezar taşı
+ *   (tombstone) olarak kalır. Bu yüzden işlemler her sırada uygulansa da kopyalar
+ *   aynı metne varır ve sunucuda dönüştürücü gerekmez
+ * - Karakterler koşu (run) halinde tutulur: aynı siteden ardışık saatli karakterler
+ *   tek düğümdür; yazarken koşu yerinde uzar, ortadan ekleme/silme koşuyu böler
+ * - Düğümler ilkel dizilerdedir; iki treap aynı düğümleri paylaşır:
+ *   sıra treap'i (belge sırası, alt ağaçtaki görünür karakter sayısı) görünür pozisyon
+ *   <-> düğüm dönüşümünü, kimlik treap'i (site, saat) kimlik -> düğüm aramasını
+ *   O(log n) yapar
+ * - Mezar taşlarının metni sıkıştırmada bırakılır, bitişik koşular birleştirilir;
+ *   kimlik iskeleti kalır (sonradan gelen işlemler onları origin olarak gösterebilir)
+ * - Çağrılar senkronizedir; pratikte hepsi EDT'den gelir
+ */
+public final class CrdtDocument {
+    private static final Logger LOGGER = Logger.getLogger(CrdtDocument.class.getName());
+
+    /** Doküman başı; başa yapılan eklemelerin origin'i */
+    public static final long ROOT = 0L;
+    /** Kimliği sunucudan gelmeyen ilk içeriğin sitesi */
+    public static final int BASE_SITE = 0;
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int COMPACT_MIN_DEAD_CHARS = 1 << 16;
+
+    private final String fileId;
+    private final int site;
+    private int clock;
+
+    // Koşular: kimlik (site, saat) ilk karakterin, sonrakiler saat + k
+    private int[] runSite;
+    private int[] runClock;
+    private int[] runLength;
+    private int[] runText; // text içindeki başlangıç, metni bırakılmış mezar taşında -1
+    private boolean[] runDeleted;
+    private int count;
+
+    // Sıra treap'i
+    private int[] seqLeft;
+    private int[] seqRight;
+    private int[] seqParent;
+    private int[] visible; // alt ağaçtaki görünür karakterler
+    private int seqRoot = NONE;
+
+    // Kimlik treap'i
+    private int[] idLeft;
+    private int[] idRight;
+    private int idRoot = NONE;
+
+    private int[] priority;
+    private int seed;
+
+    private char[] text = new char[INITIAL_CAPACITY];
+    private int textLength;
+    private int liveChars;
+    private int deadChars; // metni hâlâ tutulan mezar taşı karakterleri
+
+    // nodeAt'in bulduğu düğüm içi konum
+    private int foundOffset;
+
+    // Göstergeler
+    private long localOps;
+    private long remoteOps;
+    private long duplicateOps;
+    private long compactions;
+
+    public CrdtDocument(String fileId, int site) {
+        this.fileId = fileId;
+        this.site = site;
+        this.seed = site ^ 0x9E3779B9;
+        if (seed == 0) {
+            seed = 1;
+        }
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public int getSite() {
+        return site;
+    }
+
+    /**
+     * Kopyayı sunucu içeriğinden kurar
+     *
+     * @param content görünür metin
+     * @param runs    sunucunun koşu iskeleti (encodeRuns biçimi); null ise içerik
+     *                BASE_SITE'tan tek koşu sayılır
+     * @throws IllegalArgumentException iskelet içerikle uyuşmuyorsa
+     */
+    public synchronized void load(String content, String runs) {
+        allocate(INITIAL_CAPACITY);
+        count = 0;
+        seqRoot = NONE;
+        idRoot = NONE;
+        textLength = 0;
+        liveChars = 0;
+        deadChars = 0;
+        clock = 0;
+
+        if (runs == null || runs.isEmpty()) {
+            if (!content.isEmpty()) {
+                appendNode(NONE, BASE_SITE, 1, content.length(), false, appendText(content, 0, content.length()));
+                liveChars = content.length();
+                clock = content.length();
+            }
+            return;
+        }
+
+        int cursor = 0;
+        int last = NONE;
+        for (String item : runs.split(";")) {
+            if (item.isEmpty()) {
+                continue;
+            }
+            boolean deleted = item.endsWith("~");
+            String spec = deleted ? item.substring(0, item.length() - 1) : item;
+            int plus = spec.indexOf('+');
+            if (plus < 0) {
+                throw new IllegalArgumentException("Bad CRDT run: " + item);
+            }
+            long id = parseId(spec.substring(0, plus));
+            int length = Integer.parseInt(spec.substring(plus + 1));
+            if (length <= 0 || id == ROOT) {
+                throw new IllegalArgumentException("Bad CRDT run: " + item);
+            }
+            int start = NONE;
+            if (!deleted) {
+                if (cursor + length > content.length()) {
+                    throw new IllegalArgumentException("CRDT runs longer than content");
+                }
+                start = appendText(content, cursor, cursor + length);
+                cursor += length;
+                liveChars += length;
+            }
+            last = appendNode(last, siteOf(id), clockOf(id), length, deleted, start);
+            clock = Math.max(clock, clockOf(id) + length - 1);
+        }
+        if (cursor != content.length()) {
+            throw new IllegalArgumentException("CRDT runs cover " + cursor + " of " + content.length() + " chars");
+        }
+    }
+
+    /**
+     * Koşu iskeleti: belge sırasıyla "site.saat+uzunluk" ("~" eki mezar taşı), ";" ile ayrılmış
+     */
+    public synchronized String encodeRuns() {
+        StringBuilder runs = new StringBuilder();
+        for (int n = first(); n != NONE; n = successor(n)) {
+            if (runs.length() > 0) {
+                runs.append(';');
+            }
+            runs.append(runSite[n]).append('.').append(runClock[n]).append('+').append(runLength[n]);
+            if (runDeleted[n]) {
+                runs.append('~');
+            }
+        }
+        return runs.toString();
+    }
+
+    public synchronized int length() {
+        return liveChars;
+    }
+
+    /**
+     * position'a yapılacak eklemenin origin'i: solundaki görünür karakter, baştaysa ROOT
+     */
+    public synchronized long originAt(int position) {
+        if (position <= 0) {
+            return ROOT;
+        }
+        int n = nodeAt(Math.min(position, liveChars) - 1);
+        return n == NONE ? ROOT : id(runSite[n], runClock[n] + foundOffset);
+    }
+
+    /**
+     * Yerel ekleme; origin'i önce originAt ile alınmalıdır
+     *
+     * @return ilk karakterin kimliği (sonrakiler saat + k), metin boşsa ROOT
+     */
+    public synchronized long localInsert(int position, CharSequence insertText) {
+        int length = insertText.length();
+        if (length == 0) {
+            return ROOT;
+        }
+        position = Math.max(0, Math.min(position, liveChars));
+        int after = NONE;
+        if (position > 0) {
+            after = nodeAt(position - 1);
+            if (foundOffset < runLength[after] - 1) {
+                split(after, foundOffset + 1);
+            }
+        }
+        int newClock = clock + 1;
+        clock += length;
+        // Yeni kimlik en büyük saattir; origin'in hemen sağına yerleşir
+        place(after, site, newClock, insertText);
+        localOps++;
+        return id(site, newClock);
+    }
+
+    /**
+     * Yerel silme
+     *
+     * @return silinen kimlik aralıkları, "site.saat+uzunluk" ";" ile ayrılmış
+     */
+    public synchronized String localDelete(int position, int length) {
+        StringBuilder ids = new StringBuilder();
+        position = Math.max(0, position);
+        length = Math.min(length, liveChars - position);
+        // Bitişik kimlik aralıkları tek parça yazılır
+        int rangeSite = NONE;
+        int rangeClock = 0;
+        int rangeLength = 0;
+        while (length > 0) {
+            int n = nodeAt(position);
+            if (foundOffset > 0) {
+                n = split(n, foundOffset);
+            }
+            int take = Math.min(length, runLength[n]);
+            if (take < runLength[n]) {
+                split(n, take);
+            }
+            markDeleted(n);
+            length -= take;
+
+            if (rangeLength > 0 && runSite[n] == rangeSite && runClock[n] == rangeClock + rangeLength) {
+                rangeLength += take;
+                continue;
+            }
+            appendRange(ids, rangeSite, rangeClock, rangeLength);
+            rangeSite = runSite[n];
+            rangeClock = runClock[n];
+            rangeLength = take;
+        }
+        appendRange(ids, rangeSite, rangeClock, rangeLength);
+        localOps++;
+        maybeCompact();
+        return ids.toString();
+    }
+
+    private static void appendRange(StringBuilder ids, int rangeSite, int rangeClock, int rangeLength) {
+        if (rangeLength == 0) {
+            return;
+        }
+        if (ids.length() > 0) {
+            ids.append(';');
+        }
+        ids.append(rangeSite).append('.').append(rangeClock).append('+').append(rangeLength);
+    }
+
+    /**
+     * Uzak ekleme
+     *
+     * @return metnin yerleştiği görünür pozisyon; kimlik zaten biliniyorsa veya
+     *         origin bilinmiyorsa -1 (uygulanmaz)
+     */
+    public synchronized int integrateInsert(long insertId, long origin, String insertText) {
+        int length = insertText.length();
+        if (length == 0 || insertId == ROOT) {
+            return -1;
+        }
+        if (find(insertId) != NONE) {
+            duplicateOps++;
+            return -1;
+        }
+        int insertSite = siteOf(insertId);
+        int insertClock = clockOf(insertId);
+
+        int after = NONE;
+        if (origin != ROOT) {
+            after = find(origin);
+            if (after == NONE) {
+                LOGGER.warning("CRDT origin " + formatId(origin) + " unknown in " + fileId + ", insert dropped");
+                return -1;
+            }
+            int offset = clockOf(origin) - runClock[after];
+            if (offset < runLength[after] - 1) {
+                split(after, offset + 1);
+            }
+        }
+        // RGA: origin'den sonra kimliği büyük olan (eşzamanlı, öncelikli) eklemeler atlanır.
+        // Koşunun sonraki karakterlerinin kimliği daha da büyük olduğundan koşu bütün atlanır
+        int next = after == NONE ? first() : successor(after);
+        while (next != NONE && id(runSite[next], runClock[next]) > insertId) {
+            after = next;
+            next = successor(next);
+        }
+        clock = Math.max(clock, insertClock + length - 1);
+        remoteOps++;
+        return place(after, insertSite, insertClock, insertText);
+    }
+
+    /**
+     * Uzak silme. Hâlâ görünür olan her parça, silindiği anda görünür pozisyonuyla
+     * sink'e bildirilir; parçalar sırayla uygulanırsa pozisyonlar tutarlı kalır
+     *
+     * @return silinen görünür karakter sayısı
+     */
+    public synchronized int integrateDelete(String ids, RangeSink sink) {
+        int removed = 0;
+        for (String item : ids.split(";")) {
+            int plus = item.indexOf('+');
+            if (plus < 0) {
+                continue;
+            }
+            long start = parseId(item.substring(0, plus));
+            int deleteSite = siteOf(start);
+            int deleteClock = clockOf(start);
+            int remaining = Integer.parseInt(item.substring(plus + 1));
+            while (remaining > 0) {
+                int n = find(id(deleteSite, deleteClock));
+                if (n == NONE) {
+                    LOGGER.warning("CRDT id " + deleteSite + "." + deleteClock + " unknown in " + fileId
+                            + ", " + remaining + " deletes dropped");
+                    break;
+                }
+                int offset = deleteClock - runClock[n];
+                int take = Math.min(remaining, runLength[n] - offset);
+                if (!runDeleted[n]) {
+                    if (offset > 0) {
+                        n = split(n, offset);
+                    }
+                    if (take < runLength[n]) {
+                        split(n, take);
+                    }
+                    int position = visibleIndexOf(n);
+                    markDeleted(n);
+                    sink.accept(position, take);
+                    removed += take;
+                }
+                deleteClock += take;
+                remaining -= take;
+            }
+        }
+        remoteOps++;
+        maybeCompact();
+        return removed;
+    }
+
+    /**
+     * Uzak silmenin görünür parçası
+     */
+    public interface RangeSink {
+        void accept(int position, int length);
+    }
+
+    // ---- Yerleştirme ----
+
+    // Metni after'ın sağına koyar; after aynı sitenin bir önceki saatiyle bitiyorsa yerinde uzatır
+    private int place(int after, int placeSite, int placeClock, CharSequence placeText) {
+        int length = placeText.length();
+        if (after != NONE && !runDeleted[after] && runSite[after] == placeSite
+                && runClock[after] + runLength[after] == placeClock
+                && runText[after] + runLength[after] == textLength) {
+            int position = visibleIndexOf(after) + runLength[after];
+            appendText(placeText, 0, length);
+            runLength[after] += length;
+            pullUp(after);
+            liveChars += length;
+            return position;
+        }
+        int n = appendNode(after, placeSite, placeClock, length, false, appendText(placeText, 0, length));
+        liveChars += length;
+        return visibleIndexOf(n);
+    }
+
+    // n'yi offset'ten ikiye böler, sağ parçayı döner
+    private int split(int n, int offset) {
+        int right = newNode(runSite[n], runClock[n] + offset, runLength[n] - offset, runDeleted[n],
+                runText[n] < 0 ? -1 : runText[n] + offset);
+        runLength[n] = offset;
+        pullUp(n);
+        seqInsertAfter(n, right);
+        idRoot = idInsert(idRoot, right);
+        return right;
+    }
+
+    private void markDeleted(int n) {
+        runDeleted[n] = true;
+        pullUp(n);
+        liveChars -= runLength[n];
+        deadChars += runLength[n];
+    }
+
+    private int appendNode(int after, int nodeSite, int nodeClock, int length, boolean deleted, int textStart) {
+        int n = newNode(nodeSite, nodeClock, length, deleted, textStart);
+        seqInsertAfter(after, n);
+        idRoot = idInsert(idRoot, n);
+        return n;
+    }
+
+    private int newNode(int nodeSite, int nodeClock, int length, boolean deleted, int textStart) {
+        if (count == runSite.length) {
+            grow(count * 2);
+        }
+        int n = count++;
+        runSite[n] = nodeSite;
+        runClock[n] = nodeClock;
+        runLength[n] = length;
+        runDeleted[n] = deleted;
+        runText[n] = textStart;
+        seqLeft[n] = seqRight[n] = seqParent[n] = NONE;
+        idLeft[n] = idRight[n] = NONE;
+        // xorshift
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        priority[n] = seed;
+        visible[n] = deleted ? 0 : length;
+        return n;
+    }
+
+    private int appendText(CharSequence source, int from, int to) {
+        int length = to - from;
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+        }
+        int start = textLength;
+        for (int i = from; i < to; i++) {
+            text[textLength++] = source.charAt(i);
+        }
+        return start;
+    }
+
+    // ---- Sıra treap'i ----
+
+    private int live(int n) {
+        return runDeleted[n] ? 0 : runLength[n];
+    }
+
+    private int visibleOf(int n) {
+        return n == NONE ? 0 : visible[n];
+    }
+
+    private void pull(int n) {
+        visible[n] = live(n) + visibleOf(seqLeft[n]) + visibleOf(seqRight[n]);
+    }
+
+    private void pullUp(int n) {
+        while (n != NONE) {
+            pull(n);
+            n = seqParent[n];
+        }
+    }
+
+    // n'yi sırada after'ın hemen sağına koyar (after NONE ise en başa)
+    private void seqInsertAfter(int after, int n) {
+        if (seqRoot == NONE) {
+            seqRoot = n;
+            pull(n);
+            return;
+        }
+        if (after == NONE) {
+            int parent = leftmost(seqRoot);
+            seqLeft[parent] = n;
+            seqParent[n] = parent;
+        } else if (seqRight[after] == NONE) {
+            seqRight[after] = n;
+            seqParent[n] = after;
+        } else {
+            int parent = leftmost(seqRight[after]);
+            seqLeft[parent] = n;
+            seqParent[n] = parent;
+        }
+        pull(n);
+        while (seqParent[n] != NONE && priority[n] > priority[seqParent[n]]) {
+            rotateUp(n);
+        }
+        pullUp(n);
+    }
+
+    private void rotateUp(int n) {
+        int parent = seqParent[n];
+        int grandparent = seqParent[parent];
+        if (seqLeft[parent] == n) {
+            int middle = seqRight[n];
+            seqLeft[parent] = middle;
+            if (middle != NONE) {
+                seqParent[middle] = parent;
+            }
+            seqRight[n] = parent;
+        } else {
+            int middle = seqLeft[n];
+            seqRight[parent] = middle;
+            if (middle != NONE) {
+                seqParent[middle] = parent;
+            }
+            seqLeft[n] = parent;
+        }
+        seqParent[parent] = n;
+        seqParent[n] = grandparent;
+        if (grandparent == NONE) {
+            seqRoot = n;
+        } else if (seqLeft[grandparent] == parent) {
+            seqLeft[grandparent] = n;
+        } else {
+            seqRight[grandparent] = n;
+        }
+        pull(parent);
+        pull(n);
+    }
+
+    private int leftmost(int n) {
+        while (seqLeft[n] != NONE) {
+            n = seqLeft[n];
+        }
+        return n;
+    }
+
+    private int first() {
+        return seqRoot == NONE ? NONE : leftmost(seqRoot);
+    }
+
+    private int successor(int n) {
+        if (seqRight[n] != NONE) {
+            return leftmost(seqRight[n]);
+        }
+        int parent = seqParent[n];
+        while (parent != NONE && seqRight[parent] == n) {
+            n = parent;
+            parent = seqParent[n];
+        }
+        return parent;
+    }
+
+    // Görünür pozisyondaki karakterin düğümü; düğüm içi konum foundOffset'e yazılır
+    private int nodeAt(int position) {
+        int n = seqRoot;
+        while (n != NONE) {
+            int left = visibleOf(seqLeft[n]);
+            if (position < left) {
+                n = seqLeft[n];
+                continue;
+            }
+            position -= left;
+            int own = live(n);
+            if (position < own) {
+                foundOffset = position;
+                return n;
+            }
+            position -= own;
+            n = seqRight[n];
+        }
+        return NONE;
+    }
+
+    private int visibleIndexOf(int n) {
+        int position = visibleOf(seqLeft[n]);
+        int parent = seqParent[n];
+        while (parent != NONE) {
+            if (seqRight[parent] == n) {
+                position += visibleOf(seqLeft[parent]) + live(parent);
+            }
+            n = parent;
+            parent = seqParent[n];
+        }
+        return position;
+    }
+
+    // ---- Kimlik treap'i: anahtar (site, saat) ----
+
+    private static long idKey(int keySite, int keyClock) {
+        return ((long) keySite << 32) | (keyClock & 0xffffffffL);
+    }
+
+    private long idKey(int n) {
+        return idKey(runSite[n], runClock[n]);
+    }
+
+    private int idInsert(int root, int n) {
+        if (root == NONE) {
+            return n;
+        }
+        if (idKey(n) < idKey(root)) {
+            idLeft[root] = idInsert(idLeft[root], n);
+            if (priority[idLeft[root]] > priority[root]) {
+                int pivot = idLeft[root];
+                idLeft[root] = idRight[pivot];
+                idRight[pivot] = root;
+                return pivot;
+            }
+        } else {
+            idRight[root] = idInsert(idRight[root], n);
+            if (priority[idRight[root]] > priority[root]) {
+                int pivot = idRight[root];
+                idRight[root] = idLeft[pivot];
+                idLeft[pivot] = root;
+                return pivot;
+            }
+        }
+        return root;
+    }
+
+    // Kimliği içeren düğüm
+    private int find(long charId) {
+        int findSite = siteOf(charId);
+        int findClock = clockOf(charId);
+        long key = idKey(findSite, findClock);
+        int best = NONE;
+        int n = idRoot;
+        while (n != NONE) {
+            if (idKey(n) <= key) {
+                best = n;
+                n = idRight[n];
+            } else {
+                n = idLeft[n];
+            }
+        }
+        if (best != NONE && runSite[best] == findSite && findClock < runClock[best] + runLength[best]) {
+            return best;
+        }
+        return NONE;
+    }
+
+    // ---- Sıkıştırma ----
+
+    private void maybeCompact() {
+        if (deadChars >= COMPACT_MIN_DEAD_CHARS && deadChars > liveChars) {
+            compact();
+        }
+    }
+
+    /**
+     * Mezar taşlarının metnini bırakır ve bitişik koşuları (aynı site, ardışık saat,
+     * aynı durum) birleştirir; düğümler belge sırasıyla yeniden kurulur
+     */
+    public synchronized void compact() {
+        int oldCount = count;
+        int[] order = new int[count];
+        int size = 0;
+        for (int n = first(); n != NONE; n = successor(n)) {
+            order[size++] = n;
+        }
+
+        int[] oldSite = runSite;
+        int[] oldClock = runClock;
+        int[] oldLength = runLength;
+        int[] oldText = runText;
+        boolean[] oldDeleted = runDeleted;
+        char[] oldChars = text;
+
+        allocate(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) * 2));
+        text = new char[Math.max(INITIAL_CAPACITY, liveChars)];
+        textLength = 0;
+        count = 0;
+        seqRoot = NONE;
+        idRoot = NONE;
+        deadChars = 0;
+
+        int last = NONE;
+        for (int i = 0; i < size; i++) {
+            int o = order[i];
+            boolean deleted = oldDeleted[o];
+            if (!deleted) {
+                System.arraycopy(oldChars, oldText[o], text, textLength, oldLength[o]);
+            }
+            if (last != NONE && runDeleted[last] == deleted && runSite[last] == oldSite[o]
+                    && runClock[last] + runLength[last] == oldClock[o]) {
+                runLength[last] += oldLength[o];
+                visible[last] = live(last);
+            } else {
+                last = appendNode(last, oldSite[o], oldClock[o], oldLength[o], deleted, deleted ? -1 : textLength);
+            }
+            if (!deleted) {
+                textLength += oldLength[o];
+            }
+        }
+        pullAll(seqRoot);
+        compactions++;
+        LOGGER.fine("CRDT compacted " + fileId + ": " + oldCount + " -> " + count + " runs");
+    }
+
+    // Birleştirmede uzayan koşuların alt ağaç toplamları
+    private int pullAll(int n) {
+        if (n == NONE) {
+            return 0;
+        }
+        visible[n] = live(n) + pullAll(seqLeft[n]) + pullAll(seqRight[n]);
+        return visible[n];
+    }
+
+    private void allocate(int capacity) {
+        runSite = new int[capacity];
+        runClock = new int[capacity];
+        runLength = new int[capacity];
+        runText = new int[capacity];
+        runDeleted = new boolean[capacity];
+        seqLeft = new int[capacity];
+        seqRight = new int[capacity];
+        seqParent = new int[capacity];
+        visible = new int[capacity];
+        idLeft = new int[capacity];
+        idRight = new int[capacity];
+        priority = new int[capacity];
+    }
+
+    private void grow(int capacity) {
+        runSite = Arrays.copyOf(runSite, capacity);
+        runClock = Arrays.copyOf(runClock, capacity);
+        runLength = Arrays.copyOf(runLength, capacity);
+        runText = Arrays.copyOf(runText, capacity);
+        runDeleted = Arrays.copyOf(runDeleted, capacity);
+        seqLeft = Arrays.copyOf(seqLeft, capacity);
+        seqRight = Arrays.copyOf(seqRight, capacity);
+        seqParent = Arrays.copyOf(seqParent, capacity);
+        visible = Arrays.copyOf(visible, capacity);
+        idLeft = Arrays.copyOf(idLeft, capacity);
+        idRight = Arrays.copyOf(idRight, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+    }
+
+    // ---- Kimlikler ----
+
+    /** Kimlik: üst 32 bit saat, alt 32 bit site; long karşılaştırması RGA sırasıdır */
+    public static long id(int idSite, int idClock) {
+        return ((long) idClock << 32) | (idSite & 0xffffffffL);
+    }
+
+    public static int siteOf(long charId) {
+        return (int) charId;
+    }
+
+    public static int clockOf(long charId) {
+        return (int) (charId >>> 32);
+    }
+
+    /** Tel biçimi "site.saat"; ROOT "0.0" */
+    public static String formatId(long charId) {
+        return siteOf(charId) + "." + clockOf(charId);
+    }
+
+    public static long parseId(String value) {
+        int dot = value.indexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("Bad CRDT id: " + value);
+        }
+        return id(Integer.parseInt(value.substring(0, dot)), Integer.parseInt(value.substring(dot + 1)));
+    }
+
+    /** Tahmini bellek kullanımı (diziler), bayt */
+    public synchronized long memoryBytes() {
+        return (long) runSite.length * (11 * 4 + 1) + (long) text.length * 2;
+    }
+
+    public synchronized int getRunCount() {
+        return count;
+    }
+
+    /** Görünür metin */
+    public synchronized String text() {
+        StringBuilder visibleText = new StringBuilder(liveChars);
+        for (int n = first(); n != NONE; n = successor(n)) {
+            if (!runDeleted[n]) {
+                visibleText.append(text, runText[n], runLength[n]);
+            }
+        }
+        return visibleText.toString();
+    }
+
+    public synchronized String summary() {
+        return "site " + site + ", clock " + clock + ", " + liveChars + " chars in " + count + " runs, "
+                + localOps + " local / " + remoteOps + " remote ops, " + duplicateOps + " duplicates, "
+                + compactions + " compactions, ~" + (memoryBytes() / 1024) + " KB";
+    }
+
+    @Override
+    public String toString() {
+        return "CrdtDocument{" + fileId + ", " + summary() + "}";
+    }
+}
@@ -0,0 +1,237 @@
+package org.multiuserwordeditor.network;
+
+import org.multiuserwordeditor.model.Message;
+import org.multiuserwordeditor.model.Payload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * - Giden düzenlemeleri kısa bir pencere boyunca biriktirir
+ * - Art arda yazılan karakterleri tek eklemede, art arda silmeleri (backspace /
+ *   delete) tek silmede birleştirir; yeni yazılmış metnin sonundan silme eklemeyi kısaltır
+ * - Pencere dolunca veya işlem sınırına ulaşınca tek TEXT_BATCH olarak gönderir
+ *   (tek işlem kaldıysa normal TEXT_INSERT / TEXT_DELETE)
+ */
+public class EditBatcher {
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 30;
+    public static final int DEFAULT_MAX_BATCH_OPS = 64;
+
+    private final Consumer<Message> sender;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+    private volatile int maxBatchOps = DEFAULT_MAX_BATCH_OPS;
+
+    // Bekleyen işlemler - tek doküman için, "this" kilidi altında
+    private final List<PendingOp> pending = new ArrayList<>();
+    private String pendingUserId;
+    private String pendingFileId;
+    private ScheduledFuture<?> scheduledFlush;
+
+    // Sayaçlar
+    private final AtomicLong opsSubmitted = new AtomicLong();
+    private final AtomicLong opsSent = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong maxOpsPerFrame = new AtomicLong();
+
+    public EditBatcher(Consumer<Message> sender) {
+        this.sender = sender;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mtp-edit-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public void setMaxBatchOps(int maxBatchOps) {
+        this.maxBatchOps = Math.max(1, maxBatchOps);
+    }
+
+    public int getMaxBatchOps() {
+        return maxBatchOps;
+    }
+
+    public synchronized void insert(String userId, String fileId, int position, String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        prepare(userId, fileId);
+        opsSubmitted.incrementAndGet();
+
+        PendingOp last = last();
+        if (last != null && last.isInsert() && position == last.position + last.text.length()) {
+            last.text.append(text);
+        } else {
+            pending.add(PendingOp.insert(position, text));
+        }
+        afterAdd();
+    }
+
+    public synchronized void delete(String userId, String fileId, int position, int length) {
+        if (length <= 0) {
+            return;
+        }
+        prepare(userId, fileId);
+        opsSubmitted.incrementAndGet();
+
+        PendingOp last = last();
+        if (last != null && last.isInsert() && position >= last.position
+                && position + length == last.position + last.text.length()) {
+            // Az önce yazılan metnin sonu siliniyor (yazım hatası düzeltme)
+            last.text.setLength(position - last.position);
+            if (last.text.length() == 0) {
+                pending.remove(pending.size() - 1);
+            }
+        } else if (last != null && !last.isInsert() && position + length == last.position) {
+            // Backspace: silinen aralık öncekinin hemen önünde
+            last.position = position;
+            last.length += length;
+        } else if (last != null && !last.isInsert() && position == last.position) {
+            // Delete tuşu: aynı pozisyondan ileri doğru
+            last.length += length;
+        } else {
+            pending.add(PendingOp.delete(position, length));
+        }
+        afterAdd();
+    }
+
+    /**
+     * Bekleyen işlemleri hemen gönderir (başka bir mesajdan önce sıranın korunması için)
+     */
+    public synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Message message;
+        if (pending.size() == 1) {
+            PendingOp op = pending.get(0);
+            message = op.isInsert()
+                    ? Message.createTextInsert(pendingUserId, pendingFileId, op.position, op.text.toString())
+                    : Message.createTextDelete(pendingUserId, pendingFileId, op.position, op.length);
+        } else {
+            StringBuilder ops = new StringBuilder();
+            for (PendingOp op : pending) {
+                if (op.isInsert()) {
+                    Payload.Batch.appendInsert(ops, op.position, op.text);
+                } else {
+                    Payload.Batch.appendDelete(ops, op.position, op.length);
+                }
+            }
+            message = Message.createTextBatch(pendingUserId, pendingFileId, ops.toString(), pending.size());
+        }
+
+        int count = pending.size();
+        pending.clear();
+        opsSent.addAndGet(count);
+        framesSent.incrementAndGet();
+        maxOpsPerFrame.accumulateAndGet(count, Math::max);
+
+        sender.accept(message);
+    }
+
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    // Başka dokümana veya kullanıcıya geçildiyse önce eskileri gönder
+    private void prepare(String userId, String fileId) {
+        if (!pending.isEmpty()
+                && (!Objects.equals(fileId, pendingFileId) || !Objects.equals(userId, pendingUserId))) {
+            flush();
+        }
+        pendingUserId = userId;
+        pendingFileId = fileId;
+    }
+
+    private PendingOp last() {
+        return pending.isEmpty() ? null : pending.get(pending.size() - 1);
+    }
+
+    private void afterAdd() {
+        if (pending.size() >= maxBatchOps || flushIntervalMs == 0) {
+            flush();
+        } else if (scheduledFlush == null && !pending.isEmpty()) {
+            scheduledFlush = scheduler.schedule(this::flush, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // ---------------------------------------------------------------- sayaçlar
+
+    /** Birleştirmeden önce gelen insert/delete çağrıları */
+    public long getOpsSubmitted() {
+        return opsSubmitted.get();
+    }
+
+    /** Birleştirme sonrası gönderilen işlemler */
+    public long getOpsSent() {
+        return opsSent.get();
+    }
+
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    public double getAverageOpsPerFrame() {
+        long frames = framesSent.get();
+        return frames == 0 ? 0 : (double) opsSubmitted.get() / frames;
+    }
+
+    public long getMaxOpsPerFrame() {
+        return maxOpsPerFrame.get();
+    }
+
+    public String summary() {
+        return String.format("%d edits -> %d ops in %d frames (avg %.1f edits/frame, max %d ops/frame)",
+                getOpsSubmitted(), getOpsSent(), getFramesSent(), getAverageOpsPerFrame(), getMaxOpsPerFrame());
+    }
+
+    private static final class PendingOp {
+        int position;
+        int length; // silme için
+        StringBuilder text; // ekleme için
+
+        static PendingOp insert(int position, String text) {
+            PendingOp op = new PendingOp();
+            op.position = position;
+            op.text = new StringBuilder(text);
+            return op;
+        }
+
+        static PendingOp delete(int position, int length) {
+            PendingOp op = new PendingOp();
+            op.position = position;
+            op.length = length;
+            return op;
+        }
+
+        boolean isInsert() {
+            return text != null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.multiuserwordeditor.network;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * - Bir trafik şeridinin (TrafficLane) gecikme göstergeleri
+ * - Toplam sayı, ortalama ve en büyük değer tüm ömür boyunca; yüzdelikler
+ *   son windowSize ölçüm üzerinden (nearest-rank)
+ */
+public class LatencyStats {
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
+
+    private final long[] samples;
+    private int sampleCount;
+    private int nextSample;
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+
+    public LatencyStats(int windowSize) {
+        this.samples = new long[Math.max(1, windowSize)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[nextSample] = nanos;
+        nextSample = (nextSample + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        lastNanos = nanos;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getLastMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastNanos);
+    }
+
+    public synchronized long getAverageMicros() {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / count);
+    }
+
+    public synchronized long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos);
+    }
+
+    /**
+     * Son ölçümlerin yüzdeliği, ölçüm yoksa -1
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (sampleCount == 0) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))]);
+    }
+
+    public String summary() {
+        return getCount() + " msgs, p50 " + getPercentileMicros(50) + "us p99 " + getPercentileMicros(99)
+                + "us avg " + getAverageMicros() + "us max " + getMaxMicros() + "us";
+    }
+}
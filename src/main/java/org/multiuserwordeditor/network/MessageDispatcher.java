@@ -0,0 +1,230 @@
+package org.multiuserwordeditor.network;
+
+import org.multiuserwordeditor.model.Message;
+import org.multiuserwordeditor.model.MtpCodec;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * - MessageType.ordinal() ile indekslenen mesaj yönlendirme tablosu
+ * - Gelen çerçevede sadece TYPE alanına bakılır; kimsenin dinlemediği
+ *   tipler hiç çözülmez (deserialize edilmez)
+ */
+public class MessageDispatcher {
+    private static final Logger LOGGER = Logger.getLogger(MessageDispatcher.class.getName());
+
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+
+    private final Function<CharSequence, Message> defaultDecoder;
+
+    // Slot başına: özel çözücü, NetworkManager'ın kendi işleyicisi, UI işleyicisi
+    private final Function<CharSequence, Message>[] decoders;
+    private final Consumer<Message>[] internalHandlers;
+    private final Consumer<Message>[] handlers;
+
+    // Tek seferlik yanıt bekleyenler (istek/yanıt eşleştirme); ilk gelen mesajı alırlar
+    private final Queue<Waiter>[] waiters;
+    // "cid" alanıyla eşleşecek bekleyenler (aynı zamanda tiplerinin kuyruğundadır)
+    private final Map<String, Waiter> correlated = new ConcurrentHashMap<>();
+
+    // Tipe özel işleyicisi olmayan mesajlar için (eski setMessageHandler API'si)
+    private volatile Consumer<Message> fallbackHandler;
+
+    // Jenerik dizi oluşturulamadığından tablolar ham tiple ayrılır
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public MessageDispatcher(Function<CharSequence, Message> defaultDecoder) {
+        this.defaultDecoder = defaultDecoder;
+        this.decoders = new Function[TYPES.length];
+        this.internalHandlers = new Consumer[TYPES.length];
+        this.handlers = new Consumer[TYPES.length];
+        this.waiters = new Queue[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            waiters[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public void registerDecoder(Message.MessageType type, Function<CharSequence, Message> decoder) {
+        decoders[type.ordinal()] = decoder;
+    }
+
+    /**
+     * NetworkManager'ın protokol seviyesindeki işleyicisi - UI işleyicisinden önce çalışır
+     * ve clearHandlers() ile silinmez.
+     */
+    public void registerInternalHandler(Message.MessageType type, Consumer<Message> handler) {
+        internalHandlers[type.ordinal()] = handler;
+    }
+
+    public void registerHandler(Message.MessageType type, Consumer<Message> handler) {
+        handlers[type.ordinal()] = handler;
+    }
+
+    /**
+     * Verilen tipteki bir sonraki mesajla tamamlanan future. consume true ise
+     * mesaj UI işleyicisine ayrıca iletilmez (internal işleyici yine çalışır).
+     */
+    public CompletableFuture<Message> expect(Message.MessageType type, boolean consume) {
+        return expect(type, null, consume);
+    }
+
+    /**
+     * İsteğe bağlı korelasyon id'li bekleyen. Yanıtta aynı "cid" varsa doğrudan
+     * bu bekleyene gider; aynı cid'i taşıyan ERROR future'ı hata ile bitirir.
+     * cid'siz bekleyenler (eski sunucu) aynı tipteki ilk cid'siz yanıtı sırayla alır;
+     * başka kullanıcılara ait yayınlar cid taşımadığı için cid'li bekleyeni tamamlamaz.
+     */
+    public CompletableFuture<Message> expect(Message.MessageType type, String correlationId, boolean consume) {
+        Waiter waiter = new Waiter(type, correlationId, consume);
+        Queue<Waiter> queue = waiters[type.ordinal()];
+        queue.add(waiter);
+        if (correlationId != null) {
+            correlated.put(correlationId, waiter);
+        }
+        // Zaman aşımı / iptal ile biten bekleyen kuyrukta kalmasın
+        waiter.future.whenComplete((message, error) -> {
+            queue.remove(waiter);
+            if (correlationId != null) {
+                correlated.remove(correlationId, waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    public void clearHandlers() {
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = null;
+        }
+        fallbackHandler = null;
+    }
+
+    public void setFallbackHandler(Consumer<Message> handler) {
+        this.fallbackHandler = handler;
+    }
+
+    public boolean isSubscribed(Message.MessageType type) {
+        int slot = type.ordinal();
+        return internalHandlers[slot] != null || handlers[slot] != null || fallbackHandler != null
+                || !waiters[slot].isEmpty()
+                || (type == Message.MessageType.ERROR && !correlated.isEmpty());
+    }
+
+    /**
+     * Metin çerçevesini yönlendirir. Çerçeve tanınmadıysa veya çözülemediyse false döner.
+     */
+    public boolean dispatch(CharSequence rawMessage) {
+        Message.MessageType type = MtpCodec.peekType(rawMessage);
+        if (type == null) {
+            return false;
+        }
+
+        if (!isSubscribed(type)) {
+            LOGGER.finest("No subscriber for " + type + " - frame skipped without parsing");
+            return true;
+        }
+
+        Function<CharSequence, Message> decoder = decoders[type.ordinal()];
+        Message message = (decoder != null ? decoder : defaultDecoder).apply(rawMessage);
+        if (message == null) {
+            return false;
+        }
+        deliver(message);
+        return true;
+    }
+
+    /**
+     * Zaten çözülmüş mesajı (ör. binary frame) yönlendirir.
+     */
+    public void dispatch(Message message) {
+        if (message != null && message.getType() != null && isSubscribed(message.getType())) {
+            deliver(message);
+        }
+    }
+
+    private void deliver(Message message) {
+        int slot = message.getType().ordinal();
+
+        Consumer<Message> internal = internalHandlers[slot];
+        if (internal != null) {
+            invoke(internal, message);
+        }
+
+        Waiter waiter = takeWaiter(message);
+        if (waiter != null && complete(waiter, message) && waiter.consume) {
+            return;
+        }
+
+        Consumer<Message> handler = handlers[slot];
+        if (handler == null) {
+            handler = fallbackHandler;
+        }
+        if (handler != null) {
+            invoke(handler, message);
+        }
+    }
+
+    private Waiter takeWaiter(Message message) {
+        String correlationId = message.getData(Message.CORRELATION_KEY);
+        if (correlationId != null) {
+            Waiter waiter = correlated.get(correlationId);
+            if (waiter != null && (waiter.type == message.getType()
+                    || message.getType() == Message.MessageType.ERROR)) {
+                correlated.remove(correlationId, waiter);
+                waiters[waiter.type.ordinal()].remove(waiter);
+                return waiter;
+            }
+            if (message.getType() == Message.MessageType.ERROR) {
+                return null;
+            }
+        }
+
+        // Eşleşme yok: sunucu bir bağlantının isteklerini sırayla yanıtlar
+        Iterator<Waiter> it = waiters[message.getType().ordinal()].iterator();
+        while (it.hasNext()) {
+            Waiter waiter = it.next();
+            if (waiter.correlationId == null) {
+                it.remove();
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private static boolean complete(Waiter waiter, Message message) {
+        if (message.getType() == Message.MessageType.ERROR && waiter.type != Message.MessageType.ERROR) {
+            String reason = message.getData("message");
+            return waiter.future.completeExceptionally(
+                    new IllegalStateException(reason != null ? reason : "Sunucu isteği reddetti"));
+        }
+        return waiter.future.complete(message);
+    }
+
+    private void invoke(Consumer<Message> handler, Message message) {
+        try {
+            handler.accept(message);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Handler failed for " + message.getType(), e);
+        }
+    }
+
+    private static final class Waiter {
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+        final Message.MessageType type;
+        final String correlationId;
+        final boolean consume;
+
+        Waiter(Message.MessageType type, String correlationId, boolean consume) {
+            this.type = type;
+            this.correlationId = correlationId;
+            this.consume = consume;
+        }
+    }
+}
@@ -2,16 +2,34 @@ package org.multiuserwordeditor.network;
 
 import org.multiuserwordeditor.model.Document;
 import org.multiuserwordeditor.model.Message;
+import org.multiuserwordeditor.model.MtpBinaryCodec;
+import org.multiuserwordeditor.model.MtpCodec;
+import org.multiuserwordeditor.model.SessionAliases;
 
 // WebSocket imports
+import org.java_websocket.WebSocket;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ServerHandshake;
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,12 +47,120 @@ public class NetworkManager {
     // WebSocket fields
     private WebSocketClient webSocketClient;
     private URI serverUri;
+    private volatile CompletableFuture<Void> connectFuture;
+    private volatile CompletableFuture<Message> prefetchedFileList;
     private boolean isConnected;
     private String userId;
 
+    // Negotiated at CONNECT/CONNECT_ACK - text protocol is the fallback
+    private volatile boolean binaryMode;
+    private volatile boolean multiCharInsert;
+    private volatile MtpCodec textCodec = MtpCodec.LEGACY;
+    private volatile MtpBinaryCodec binaryCodec = MtpBinaryCodec.INSTANCE;
+    private volatile SessionAliases aliases;
+
+    // permessage-deflate: frames below the threshold are sent uncompressed so
+    // single keystrokes don't pay the deflate overhead
+    private static final boolean DEFLATE_ENABLED = !"false".equalsIgnoreCase(System.getProperty("mtp.deflate"));
+    private static final int DEFLATE_THRESHOLD = Integer.getInteger("mtp.deflate.threshold", 256);
+
+    // Measurement mode (-Dmtp.wireStats=true): payload vs on-wire byte counters
+    private final WireStats wireStats = Boolean.getBoolean("mtp.wireStats") ? new WireStats() : null;
+
+    // Outbound edit coalescing ("batch" capability)
+    private final EditBatcher editBatcher = new EditBatcher(message -> sendMessageSafe(withSenderField(message)));
+    private volatile boolean batchingEnabled;
+
+    // Single writer thread that owns all webSocketClient.send() calls
+    private final OutboundWriter writer;
+
+    // Per-document in-flight window released by TEXT_ACK ("ack" capability)
+    private final AckWindow ackWindow = new AckWindow(this::enqueueReleased,
+            Integer.getInteger("mtp.ack.window", AckWindow.DEFAULT_WINDOW_SIZE));
+    private volatile boolean ackWindowEnabled;
+
+    // Automatic reconnect ("resume" capability): CONNECT_ACK hands out a session
+    // token; after an unexpected close the token is offered again and the edits
+    // the server has not acknowledged are replayed
+    private static final boolean RECONNECT_ENABLED = !"false".equalsIgnoreCase(System.getProperty("mtp.reconnect"));
+    private static final long RECONNECT_BASE_DELAY_MS = Long.getLong("mtp.reconnect.baseDelayMs", 250);
+    private static final long RECONNECT_MAX_DELAY_MS = Long.getLong("mtp.reconnect.maxDelayMs", 30000);
+    private static final int RECONNECT_MAX_ATTEMPTS = Integer.getInteger("mtp.reconnect.maxAttempts", 10);
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mtp-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile String resumeToken;
+    private volatile boolean reconnecting;
+    private volatile boolean userInitiatedDisconnect;
+    private volatile Consumer<ConnectionEvent> connectionListener;
+
+    // RTT measurement and dead-connection detection; replaces the library's own lost-connection timer
+    private final PingMonitor pingMonitor = new PingMonitor(this::sendPing, this::onPingTimeout,
+            Long.getLong("mtp.ping.intervalMs", PingMonitor.DEFAULT_INTERVAL_MS),
+            Long.getLong("mtp.ping.timeoutMs", PingMonitor.DEFAULT_TIMEOUT_MS),
+            Long.getLong("mtp.ping.degradedMs", PingMonitor.DEFAULT_DEGRADED_MS),
+            Integer.getInteger("mtp.ping.window", PingMonitor.DEFAULT_WINDOW_SIZE));
+
+    // Request/response correlation ("cid" capability)
+    private static final long REQUEST_TIMEOUT_MS = Long.getLong("mtp.request.timeoutMs", 10000);
+    private final AtomicLong correlationCounter = new AtomicLong();
+    private volatile boolean correlationEnabled;
+
+    // Offline editing: edits no session can carry go to a memory-mapped journal per
+    // document (per server and user) and are replayed after the next login or resume
+    private static final boolean OFFLINE_ENABLED = !"false".equalsIgnoreCase(System.getProperty("mtp.offline"));
+    private static final String OFFLINE_DIR = System.getProperty("mtp.offline.dir", "offline");
+    private static final OfflineJournal.FsyncPolicy OFFLINE_FSYNC = OfflineJournal.FsyncPolicy
+            .valueOf(System.getProperty("mtp.offline.fsync", "INTERVAL").trim().toUpperCase());
+    private static final long OFFLINE_FSYNC_INTERVAL_MS = Long.getLong("mtp.offline.fsyncMs",
+            OfflineJournal.DEFAULT_FSYNC_INTERVAL_MS);
+    private volatile OfflineJournal offlineJournal;
+
+    // Priority lanes: keystroke edits first, catalog/content transfers behind them.
+    // Outbound lanes live in the writer; inbound bulk frames are handled off the
+    // socket thread so a large FILE_LIST_RESP doesn't hold up TEXT_UPDATEs
+    private static final boolean LANES_ENABLED = !"false".equalsIgnoreCase(System.getProperty("mtp.lanes"));
+    private static final int BULK_CHARS = Integer.getInteger("mtp.lane.bulkChars", OutboundWriter.DEFAULT_BULK_CHARS);
+    private final ExecutorService bulkInbound = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mtp-bulk-inbound");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Bulk-thread frames not yet handled: FILE_LIST_RESPs with the catalog changes
+    // queued behind them, FILE_CONTENTs with every frame queued behind them
+    private final AtomicInteger pendingBulkLists = new AtomicInteger();
+    private final AtomicInteger pendingBulkContent = new AtomicInteger();
+    private final LatencyStats[] inboundLaneStats = {
+            new LatencyStats(LatencyStats.DEFAULT_WINDOW_SIZE), new LatencyStats(LatencyStats.DEFAULT_WINDOW_SIZE) };
+
+    // Operational transformation ("ot" capability): per open document the server
+    // revision and the local ops it has not acknowledged yet; remote ops are
+    // transformed against them before they are applied. Every edit frame is one
+    // revision on the server, so client-side batching is off while it is on
+    private static final boolean OT_OFFERED = !"false".equalsIgnoreCase(System.getProperty("mtp.ot"));
+    private final Map<String, OtDocument> otDocuments = new ConcurrentHashMap<>();
+    private volatile boolean otEnabled;
+
+    // Sequence CRDT replicas ("crdt" capability, -Dmtp.crdt=true): edits carry
+    // character ids instead of relying on positions, so replicas converge without a
+    // server-side transformer. It replaces "ot" when offered; batching is off because
+    // TEXT_BATCH ops have no room for ids
+    private static final boolean CRDT_OFFERED = Boolean.getBoolean("mtp.crdt");
+    private final int crdtSite = ThreadLocalRandom.current().nextInt(1, Integer.MAX_VALUE);
+    private final Map<String, CrdtDocument> crdtDocuments = new ConcurrentHashMap<>();
+    private volatile boolean crdtEnabled;
+
+    /**
+     * Connection state changes reported while the session is kept alive across drops
+     */
+    public enum ConnectionEvent {
+        LOST, RECONNECTING, RESUMED, RESUME_FAILED, GAVE_UP
+    }
+
     // Common fields
-    private ExecutorService executorService;
-    private Consumer<Message> messageHandler;
+    private final MessageDispatcher dispatcher;
     private Consumer<String> errorHandler;
     private Consumer<Document> documentUpdateHandler;
     private Consumer<String> userListUpdateHandler;
@@ -46,16 +172,49 @@ public class NetworkManager {
     private static final String KEY_VALUE_SEPARATOR = ":";
     private static final String MESSAGE_END = "\n";
 
+    private static final long WRITER_DRAIN_TIMEOUT_MS = 2000;
+    private static final long CONNECT_TIMEOUT_MS = 5000;
+
+    // Capabilities offered to the server in CONNECT
+    private static final String CLIENT_CAPABILITIES = String.join(Message.CAPABILITY_SEPARATOR,
+            Message.CAP_BINARY, Message.CAP_ESCAPE, Message.CAP_CHUNKED_CONTENT, Message.CAP_ALIAS,
+            Message.CAP_BATCH, Message.CAP_ACK, Message.CAP_RESUME, Message.CAP_CORRELATION);
+
     public NetworkManager() {
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.writer = new OutboundWriter(this::writeToSocket,
+                Integer.getInteger("mtp.send.queueCapacity", OutboundWriter.DEFAULT_CAPACITY),
+                OutboundWriter.Backpressure.valueOf(System.getProperty("mtp.send.backpressure", "BLOCK")
+                        .trim().toUpperCase()));
+        writer.setLanesEnabled(LANES_ENABLED);
+        writer.setBulkChars(BULK_CHARS);
+        // Bulk fragments wait until the library has flushed what was already handed to it
+        writer.setWireBusy(() -> {
+            WebSocketClient client = webSocketClient;
+            return client != null && isConnected && client.hasBufferedData();
+        });
         this.isConnected = false;
 
+        this.dispatcher = new MessageDispatcher(raw -> textCodec.decode(raw));
+        dispatcher.registerDecoder(Message.MessageType.FILE_LIST_RESP, MtpCodec::decodeFileList);
+        dispatcher.registerInternalHandler(Message.MessageType.CONNECT_ACK, this::handleConnectAck);
+        dispatcher.registerInternalHandler(Message.MessageType.LOGIN_ACK, this::handleLoginAck);
+        dispatcher.registerInternalHandler(Message.MessageType.FILE_CONTENT, this::learnAliases);
+        dispatcher.registerInternalHandler(Message.MessageType.TEXT_ACK, ackWindow::onAck);
+
+        editBatcher.setFlushIntervalMs(Long.getLong("mtp.batch.flushMs", EditBatcher.DEFAULT_FLUSH_INTERVAL_MS));
+        editBatcher.setMaxBatchOps(Integer.getInteger("mtp.batch.maxOps", EditBatcher.DEFAULT_MAX_BATCH_OPS));
+
         LOGGER.info("WebSocket NetworkManager initialized");
 
     }
 
-    // WebSocket connect method with connection ready waiting
-    public void connect(String host, int port) {
+    /**
+     * Opens the WebSocket without blocking the caller. The future completes from
+     * onOpen, or exceptionally from onError/onClose or after CONNECT_TIMEOUT_MS.
+     */
+    public CompletableFuture<Void> connectAsync(String host, int port) {
+        userInitiatedDisconnect = false;
+        CompletableFuture<Void> opened;
         try {
             LOGGER.info("WebSocket connection başlatılıyor: " + host + ":" + port);
 
@@ -64,83 +223,192 @@ public class NetworkManager {
             serverUri = new URI(wsUrl);
 
             LOGGER.info("WebSocket URI: " + wsUrl);
+            opened = openSocket();
+        } catch (Exception e) {
+            opened = CompletableFuture.failedFuture(e);
+        }
 
-            // WebSocket client oluştur
-            createWebSocketClient();
+        long started = System.nanoTime();
+        return opened.whenComplete((ignored, error) -> {
+            if (error == null) {
+                LOGGER.info("✅ WebSocket connection established successfully in "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms");
+            } else {
+                LOGGER.severe("WebSocket connection error: " + error);
+                handleError("WebSocket sunucusuna bağlanılamadı",
+                        error instanceof Exception ? (Exception) error : new Exception(error));
+            }
+        });
+    }
 
-            // Bağlantıyı başlat
+    // Opens a fresh client to serverUri; failures are left to the caller (no error dialog)
+    private CompletableFuture<Void> openSocket() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            connectFuture = future;
+            createWebSocketClient();
             webSocketClient.connect();
 
             LOGGER.info("WebSocket connection request sent");
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
 
-            // 🔧 FIX: Wait for connection to be ready (with timeout)
-            int maxWaitTime = 5000; // 5 seconds
-            int waitInterval = 100; // 100ms intervals
-            int totalWaited = 0;
-
-            while (!isConnected && totalWaited < maxWaitTime) {
-                try {
-                    Thread.sleep(waitInterval);
-                    totalWaited += waitInterval;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-
-            if (isConnected) {
-                LOGGER.info("✅ WebSocket connection established successfully in " + totalWaited + "ms");
-            } else {
-                LOGGER.warning("⚠ WebSocket connection timeout after " + maxWaitTime + "ms");
-                throw new Exception("WebSocket connection timeout");
+        return future.orTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS).whenComplete((ignored, error) -> {
+            if (error instanceof TimeoutException && webSocketClient != null) {
+                webSocketClient.close();
             }
+        });
+    }
 
+    /**
+     * Blocking variant kept for callers off the EDT
+     */
+    public void connect(String host, int port) {
+        try {
+            connectAsync(host, port).join();
         } catch (Exception e) {
-            LOGGER.severe("WebSocket connection error: " + e.getMessage());
-            handleError("WebSocket sunucusuna bağlanılamadı", e);
+            // already reported through handleError
         }
+    }
+
+    /**
+     * Pipelined login: LOGIN goes out as soon as the socket opens and FILE_LIST as
+     * soon as a successful LOGIN_ACK arrives, without waiting for any UI step. The
+     * LOGIN_ACK still reaches the registered handler; the FILE_LIST_RESP is kept
+     * for {@link #takePrefetchedFileList()}.
+     *
+     * @return completes with the LOGIN_ACK message
+     */
+    public CompletableFuture<Message> connectAndLogin(String host, int port, String username, String password) {
+        return connectAsync(host, port).thenCompose(opened -> {
+            CompletableFuture<Message> loginAck = dispatcher.expect(Message.MessageType.LOGIN_ACK, false);
+            login(username, password);
+            return loginAck;
+        }).thenApply(ack -> {
+            if ("success".equals(ack.getData("status")) && ack.getUserId() != null) {
+                setUserId(ack.getUserId());
+                prefetchedFileList = requestFileList(true);
+            }
+            return ack;
+        });
+    }
 
+    /**
+     * File list requested during the pipelined login, or null if none is pending.
+     * Hands the future over once; later calls return null.
+     */
+    public CompletableFuture<Message> takePrefetchedFileList() {
+        CompletableFuture<Message> prefetched = prefetchedFileList;
+        prefetchedFileList = null;
+        return prefetched;
     }
 
     // WebSocket client oluşturma
     private void createWebSocketClient() {
-        webSocketClient = new WebSocketClient(serverUri) {
+        webSocketClient = new WebSocketClient(serverUri, createDraft()) {
+            private volatile boolean opened;
 
             @Override
             public void onOpen(ServerHandshake handshake) {
                 LOGGER.info("✅ WebSocket connection opened!");
+                opened = true;
                 isConnected = true;
 
                 System.out.println("=== WEBSOCKET CLIENT CONNECTED ===");
                 System.out.println("Server handshake: " + handshake.getHttpStatus());
+                System.out.println("Extensions: " + handshake.getFieldValue("Sec-WebSocket-Extensions"));
                 System.out.println("Ready to send/receive messages");
                 System.out.println("================================");
+
+                sendCapabilityOffer();
+                completeConnect(null);
+                pingMonitor.start();
+            }
+
+            @Override
+            public void onWebsocketPong(WebSocket conn, Framedata frame) {
+                super.onWebsocketPong(conn, frame);
+                pingMonitor.onPong();
             }
 
             @Override
             public void onMessage(String message) {
                 try {
-                    System.out.println("📨 WebSocket message received: " + message);
-                    handleServerMessage(message);
+                    if (wireStats != null) {
+                        wireStats.recordReceived(message);
+                    }
+                    Message.MessageType type = MtpCodec.peekType(message);
+                    // FILE_CONTENT parçaları megabaytlarca olabilir; sadece tür ve uzunluk
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine("📨 WebSocket message received: " + type + " (" + message.length() + " chars)");
+                    }
+                    receive(type, () -> handleServerMessage(message));
                 } catch (Exception e) {
                     LOGGER.severe("Message handling error: " + e.getMessage());
                     e.printStackTrace();
                 }
             }
 
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                try {
+                    if (wireStats != null) {
+                        wireStats.recordReceived(bytes.remaining());
+                    }
+                    if (pendingBulkContent.get() > 0) {
+                        // Aliases taught by the pending FILE_CONTENT must be known before decoding
+                        ByteBuffer copy = ByteBuffer.allocate(bytes.remaining()).put(bytes);
+                        copy.flip();
+                        receive(Message.MessageType.FILE_CONTENT, () -> decodeAndDispatch(copy));
+                        return;
+                    }
+                    Message message = binaryCodec.decode(bytes);
+                    if (message == null) {
+                        LOGGER.warning("Failed to decode binary WebSocket message (" + bytes.remaining() + " bytes)");
+                        return;
+                    }
+                    receive(message.getType(), () -> dispatchMessage(message));
+                } catch (Exception e) {
+                    LOGGER.severe("Binary message handling error: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+
             @Override
             public void onClose(int code, String reason, boolean remote) {
                 LOGGER.info(
                         "WebSocket connection closed. Code: " + code + ", Reason: " + reason + ", Remote: " + remote);
                 isConnected = false;
+                pingMonitor.stop();
+                // Only a session that was up is resumed; failed reconnect attempts retry on their own
+                boolean resume = opened && shouldReconnect();
+                completeConnect(new IllegalStateException("WebSocket closed before open: " + reason));
+                binaryMode = false;
+                textCodec = MtpCodec.LEGACY;
+                binaryCodec = MtpBinaryCodec.INSTANCE;
+                aliases = null;
+                if (resume) {
+                    // Edits keep queueing in the paused ack window until the session is back
+                    ackWindow.pause();
+                } else if (!reconnecting) {
+                    resetSessionState();
+                }
+                LOGGER.info("Edit batching: " + editBatcher.summary());
 
                 System.out.println("=== WEBSOCKET CLIENT DISCONNECTED ===");
                 System.out.println("Close code: " + code);
                 System.out.println("Reason: " + reason);
                 System.out.println("Remote initiated: " + remote);
+                if (wireStats != null) {
+                    System.out.println("Wire stats: " + wireStats.summary());
+                }
                 System.out.println("===================================");
 
-                if (errorHandler != null) {
+                if (resume) {
+                    notifyConnection(ConnectionEvent.LOST);
+                    scheduleReconnect(1);
+                } else if (!reconnecting && errorHandler != null) {
                     errorHandler.accept("WebSocket bağlantısı kesildi: " + reason);
                 }
             }
@@ -153,23 +421,568 @@ public class NetworkManager {
                 System.out.println("❌ WebSocket error: " + ex.getMessage());
 
                 isConnected = false;
-                handleError("WebSocket hatası", ex);
+                // A dropped session is reported through the connection listener instead
+                if (!completeConnect(ex) && !reconnecting && !shouldReconnect()) {
+                    handleError("WebSocket hatası", ex);
+                }
             }
         };
 
+        if (wireStats != null) {
+            webSocketClient.setSocketFactory(wireStats.socketFactory());
+        }
+        webSocketClient.setConnectionLostTimeout(0);
+    }
+
+    // Ping thread
+    private void sendPing() {
+        WebSocketClient client = webSocketClient;
+        if (client != null && client.isOpen()) {
+            client.sendPing();
+        }
+    }
+
+    // No pong within mtp.ping.timeoutMs: close now so onClose starts the reconnect
+    private void onPingTimeout() {
+        WebSocketClient client = webSocketClient;
+        if (client != null && isConnected) {
+            LOGGER.warning("Ping timeout - closing connection (" + pingMonitor.summary() + ")");
+            client.closeConnection(CloseFrame.ABNORMAL_CLOSE, "Ping timeout");
+        }
+    }
+
+    /**
+     * RTT percentiles and degraded state of the current connection
+     */
+    public PingMonitor getPingMonitor() {
+        return pingMonitor;
+    }
+
+    /**
+     * Called after every RTT sample and on degraded/healthy changes; off the EDT
+     */
+    public void setHealthListener(Consumer<PingMonitor> listener) {
+        pingMonitor.setListener(listener);
+    }
+
+    // RFC 7692 permessage-deflate with context takeover in both directions; the
+    // server may still decline it, in which case frames go out uncompressed
+    private static Draft_6455 createDraft() {
+        if (!DEFLATE_ENABLED) {
+            return new Draft_6455();
+        }
+        PerMessageDeflateExtension deflate = new PerMessageDeflateExtension();
+        deflate.setThreshold(DEFLATE_THRESHOLD);
+        deflate.setServerNoContextTakeover(false);
+        deflate.setClientNoContextTakeover(false);
+        return new Draft_6455(deflate);
+    }
+
+    /**
+     * Flush window for coalescing edits; 0 sends every edit immediately
+     */
+    public void setBatchFlushInterval(long millis) {
+        editBatcher.setFlushIntervalMs(millis);
+    }
+
+    /**
+     * Maximum operations per TEXT_BATCH frame
+     */
+    public void setMaxBatchSize(int maxOps) {
+        editBatcher.setMaxBatchOps(maxOps);
+    }
+
+    /**
+     * Ops-per-frame counters of the outbound edit queue
+     */
+    public EditBatcher getEditBatcher() {
+        return editBatcher;
+    }
+
+    /**
+     * What enqueue does when the send queue is full
+     */
+    public void setBackpressure(OutboundWriter.Backpressure backpressure) {
+        writer.setBackpressure(backpressure);
+    }
+
+    /**
+     * Supplies the full document content that replaces dropped edits in
+     * DROP_TO_SNAPSHOT mode; called on the thread that hit the full queue.
+     */
+    public void setSnapshotProvider(java.util.function.Function<String, String> contentForFileId) {
+        writer.setSnapshotProvider((senderId, fileId) -> {
+            String content = contentForFileId.apply(fileId);
+            return content != null ? Message.createFileUpdate(senderId, fileId, content) : null;
+        });
+    }
+
+    /**
+     * Queue depth and enqueue-to-wire latency gauges
+     */
+    public OutboundWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Maximum unacknowledged edits per document when the server supports TEXT_ACK
+     */
+    public void setAckWindowSize(int size) {
+        ackWindow.setWindowSize(size);
+    }
+
+    /**
+     * In-flight / held edit gauges of the ack window
+     */
+    public AckWindow getAckWindow() {
+        return ackWindow;
+    }
+
+    /**
+     * True when the server transforms edits by revision ("ot" capability)
+     */
+    public boolean isOtEnabled() {
+        return otEnabled;
+    }
+
+    /**
+     * Starts OT tracking for a document whose content just arrived; earlier state
+     * for the same document is discarded. Null when "ot" is off or the content
+     * carries no revision - edits are then applied as they come.
+     */
+    public OtDocument openOtDocument(String fileId, Message content) {
+        Integer revision = content != null ? content.getDataAsInt(Message.REVISION_KEY) : null;
+        if (!otEnabled || fileId == null || revision == null) {
+            if (fileId != null) {
+                otDocuments.remove(fileId);
+            }
+            return null;
+        }
+        OtDocument document = new OtDocument(fileId, revision);
+        otDocuments.put(fileId, document);
+        LOGGER.info("OT tracking " + fileId + " from revision " + revision);
+        return document;
+    }
+
+    /** OT state of an open document, or null */
+    public OtDocument getOtDocument(String fileId) {
+        return fileId != null ? otDocuments.get(fileId) : null;
+    }
+
+    public void closeOtDocument(String fileId) {
+        OtDocument document = fileId != null ? otDocuments.remove(fileId) : null;
+        if (document != null) {
+            LOGGER.info("OT " + fileId + " closed: " + document.summary());
+        }
+    }
+
+    /**
+     * True when edits carry CRDT character ids ("crdt" capability)
+     */
+    public boolean isCrdtEnabled() {
+        return crdtEnabled;
+    }
+
+    /**
+     * Builds the CRDT replica of a document whose content just arrived; earlier state
+     * for the same document is discarded. The run skeleton comes from the content's
+     * "runs" field (without it the content is one base run). Null when "crdt" is off
+     * or the skeleton does not match the text - edits then go by position.
+     */
+    public CrdtDocument openCrdtDocument(String fileId, Message content, String text) {
+        if (!crdtEnabled || fileId == null || text == null) {
+            if (fileId != null) {
+                crdtDocuments.remove(fileId);
+            }
+            return null;
+        }
+        CrdtDocument document = new CrdtDocument(fileId, crdtSite);
+        try {
+            document.load(text, content != null ? content.getData(Message.CRDT_RUNS_KEY) : null);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("CRDT runs of " + fileId + " rejected, editing by position: " + e.getMessage());
+            crdtDocuments.remove(fileId);
+            return null;
+        }
+        crdtDocuments.put(fileId, document);
+        LOGGER.info("CRDT replica " + fileId + ": " + document.summary());
+        return document;
+    }
+
+    /** CRDT replica of an open document, or null */
+    public CrdtDocument getCrdtDocument(String fileId) {
+        return fileId != null ? crdtDocuments.get(fileId) : null;
+    }
+
+    public void closeCrdtDocument(String fileId) {
+        CrdtDocument document = fileId != null ? crdtDocuments.remove(fileId) : null;
+        if (document != null) {
+            LOGGER.info("CRDT " + fileId + " closed: " + document.summary());
+        }
+    }
+
+    /**
+     * Measurement mode counters, or null when -Dmtp.wireStats is not set
+     */
+    public WireStats getWireStats() {
+        return wireStats;
+    }
+
+    /**
+     * Receives LOST / RECONNECTING / RESUMED / RESUME_FAILED / GAVE_UP; called off the EDT
+     */
+    public void setConnectionListener(Consumer<ConnectionEvent> listener) {
+        this.connectionListener = listener;
+    }
+
+    public boolean isReconnecting() {
+        return reconnecting;
+    }
+
+    private void notifyConnection(ConnectionEvent event) {
+        LOGGER.info("Connection event: " + event);
+        Consumer<ConnectionEvent> listener = connectionListener;
+        if (listener != null) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Connection listener failed", e);
+            }
+        }
+    }
+
+    private boolean shouldReconnect() {
+        return RECONNECT_ENABLED && !userInitiatedDisconnect && resumeToken != null && ackWindowEnabled
+                && serverUri != null;
+    }
+
+    private void scheduleReconnect(int attempt) {
+        if (userInitiatedDisconnect) {
+            reconnecting = false;
+            return;
+        }
+        if (attempt > RECONNECT_MAX_ATTEMPTS) {
+            LOGGER.warning("Giving up reconnect after " + RECONNECT_MAX_ATTEMPTS + " attempts");
+            reconnecting = false;
+            resetSessionState();
+            notifyConnection(ConnectionEvent.GAVE_UP);
+            if (errorHandler != null) {
+                errorHandler.accept("WebSocket bağlantısı yeniden kurulamadı");
+            }
+            return;
+        }
+
+        reconnecting = true;
+        long delay = reconnectDelay(attempt);
+        LOGGER.info("Reconnect attempt " + attempt + "/" + RECONNECT_MAX_ATTEMPTS + " in " + delay + "ms");
+        notifyConnection(ConnectionEvent.RECONNECTING);
+        reconnectScheduler.schedule(() -> {
+            if (userInitiatedDisconnect) {
+                reconnecting = false;
+                return;
+            }
+            openSocket().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    LOGGER.warning("Reconnect attempt " + attempt + " failed: " + error);
+                    scheduleReconnect(attempt + 1);
+                }
+            });
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Exponential backoff with jitter: a random delay between half and all of
+    // base * 2^(attempt-1), capped, so clients dropped together don't return together
+    private static long reconnectDelay(int attempt) {
+        long ceiling = Math.min(RECONNECT_MAX_DELAY_MS, RECONNECT_BASE_DELAY_MS << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    // Session-scoped negotiation that can't survive into a new login
+    private void resetSessionState() {
+        batchingEnabled = false;
+        ackWindowEnabled = false;
+        multiCharInsert = false;
+        correlationEnabled = false;
+        resumeToken = null;
+        ackWindow.reset();
+        otEnabled = false;
+        otDocuments.clear();
+        crdtEnabled = false;
+        crdtDocuments.clear();
+    }
+
+    // Edits may keep queueing while a dropped session is being resumed
+    private boolean canQueueEdits() {
+        return isConnected || (reconnecting && ackWindowEnabled);
+    }
+
+    // Completes the pending connectAsync future; false if nothing was pending
+    private boolean completeConnect(Exception error) {
+        CompletableFuture<Void> future = connectFuture;
+        if (future == null) {
+            return false;
+        }
+        connectFuture = null;
+        return error == null ? future.complete(null) : future.completeExceptionally(error);
+    }
+
+    // Offer optional protocol features; the server answers with the accepted subset in CONNECT_ACK
+    private void sendCapabilityOffer() {
+        try {
+            String capabilities = CLIENT_CAPABILITIES;
+            // Snapshot backpressure drops frames the server would have counted as revisions
+            if (CRDT_OFFERED) {
+                capabilities += Message.CAPABILITY_SEPARATOR + Message.CAP_CRDT;
+            } else if (OT_OFFERED && writer.getBackpressure() != OutboundWriter.Backpressure.DROP_TO_SNAPSHOT) {
+                capabilities += Message.CAPABILITY_SEPARATOR + Message.CAP_OT;
+            }
+            Message connectMsg = Message.createConnect(null, capabilities);
+            String token = resumeToken;
+            if (reconnecting && token != null) {
+                connectMsg.addData(Message.RESUME_TOKEN_KEY, token);
+            }
+            sendMessage(connectMsg);
+        } catch (Exception e) {
+            LOGGER.warning("Capability offer could not be sent: " + e.getMessage());
+        }
+    }
+
+    private void handleConnectAck(Message connectAck) {
+        boolean resuming = reconnecting;
+        reconnecting = false;
+        applyNegotiatedCapabilities(connectAck);
+        if (!resuming) {
+            return;
+        }
+
+        if ("true".equals(connectAck.getData(Message.RESUMED_KEY)) && ackWindowEnabled) {
+            // The restored session's CONNECT_ACK repeats our user alias
+            learnAliases(connectAck);
+            int replayed = ackWindow.resumeAndReplay();
+            LOGGER.info("Session resumed, replayed " + replayed + " unacknowledged edits");
+            replayOfflineJournal();
+            notifyConnection(ConnectionEvent.RESUMED);
+        } else {
+            // Server no longer knows the session: unacked edits can't be applied safely
+            LOGGER.warning("Session could not be resumed, dropping unacknowledged edits");
+            ackWindow.reset();
+            // Documents are reopened and start again from the revision in their content
+            otDocuments.clear();
+            crdtDocuments.clear();
+            notifyConnection(ConnectionEvent.RESUME_FAILED);
+        }
+    }
+
+    private void applyNegotiatedCapabilities(Message connectAck) {
+        binaryMode = connectAck.hasCapability(Message.CAP_BINARY);
+        SessionAliases sessionAliases = connectAck.hasCapability(Message.CAP_ALIAS)
+                ? new SessionAliases(connectAck.getTimestamp())
+                : null;
+        aliases = sessionAliases;
+        textCodec = (connectAck.hasCapability(Message.CAP_ESCAPE) ? MtpCodec.ESCAPED : MtpCodec.LEGACY)
+                .withAliases(sessionAliases);
+        binaryCodec = MtpBinaryCodec.INSTANCE.withAliases(sessionAliases);
+        multiCharInsert = binaryMode || textCodec.isEscaping();
+        // Batched ops carry raw text, so they need a framing that can transport it
+        batchingEnabled = connectAck.hasCapability(Message.CAP_BATCH) && multiCharInsert;
+        ackWindowEnabled = connectAck.hasCapability(Message.CAP_ACK);
+        correlationEnabled = connectAck.hasCapability(Message.CAP_CORRELATION);
+        // Revisions are counted per acknowledged frame; a merged TEXT_BATCH would hide ops
+        otEnabled = connectAck.hasCapability(Message.CAP_OT) && ackWindowEnabled && multiCharInsert;
+        if (otEnabled) {
+            batchingEnabled = false;
+        }
+        // Ids ride in the data section, which needs multi-char framing
+        crdtEnabled = connectAck.hasCapability(Message.CAP_CRDT) && multiCharInsert;
+        if (crdtEnabled) {
+            otEnabled = false;
+            batchingEnabled = false;
+        }
+        resumeToken = connectAck.hasCapability(Message.CAP_RESUME)
+                ? connectAck.getData(Message.RESUME_TOKEN_KEY)
+                : null;
+        LOGGER.info("Negotiated MTP framing: " + (binaryMode ? "binary" : "text")
+                + ", escaped data: " + textCodec.isEscaping() + ", aliases: " + (sessionAliases != null)
+                + ", batching: " + batchingEnabled + ", ot: " + otEnabled + ", crdt: " + crdtEnabled + ", ack window: "
+                + (ackWindowEnabled ? ackWindow.getWindowSize() : "off") + ", resumable: " + (resumeToken != null));
+    }
+
+    private void handleLoginAck(Message loginAck) {
+        learnAliases(loginAck);
+        if ("success".equals(loginAck.getData("status")) && loginAck.getUserId() != null) {
+            // Replayed edits are sent before the UI reopens any document, so the
+            // content it receives already contains them
+            userId = loginAck.getUserId();
+            replayOfflineJournal();
+        }
+    }
+
+    // One journal per server and login name; files left by an earlier run are picked up
+    private void openOfflineJournal(String username) {
+        if (!OFFLINE_ENABLED || serverUri == null || username == null) {
+            return;
+        }
+        File directory = new File(new File(OFFLINE_DIR, serverUri.getHost() + "_" + serverUri.getPort()),
+                username.replaceAll("[^A-Za-z0-9_-]", "_"));
+        OfflineJournal previous = offlineJournal;
+        if (previous != null) {
+            if (previous.getDirectory().equals(directory)) {
+                return;
+            }
+            previous.close();
+        }
+        offlineJournal = new OfflineJournal(directory, OFFLINE_FSYNC, OFFLINE_FSYNC_INTERVAL_MS);
+    }
+
+    /**
+     * True when the edit went to the offline journal instead of the socket. Once a
+     * document has journaled edits, later ones follow them there until the replay.
+     */
+    private boolean journalIfOffline(String fileId, int position, String text, int length) {
+        OfflineJournal journal = offlineJournal;
+        if (journal == null || fileId == null || userInitiatedDisconnect) {
+            return false;
+        }
+        synchronized (journal) {
+            if (canQueueEdits() && !journal.hasPending(fileId)) {
+                return false;
+            }
+            try {
+                if (text != null) {
+                    journal.appendInsert(fileId, position, text);
+                } else {
+                    journal.appendDelete(fileId, position, length);
+                }
+                LOGGER.fine(() -> "Offline - edit journaled for " + fileId + " (" + journal.getPendingCount()
+                        + " pending)");
+                return true;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Offline journal write failed for " + fileId, e);
+                return false;
+            }
+        }
+    }
+
+    // Sends journaled edits through insertText/deleteText, compacted, in journal order
+    private void replayOfflineJournal() {
+        OfflineJournal journal = offlineJournal;
+        if (journal == null || !journal.hasPending()) {
+            return;
+        }
+        synchronized (journal) {
+            for (String fileId : journal.getPendingFileIds()) {
+                for (OfflineJournal.Op op : journal.drain(fileId)) {
+                    if (op.isInsert()) {
+                        insertText(fileId, op.getPosition(), op.getText());
+                    } else {
+                        deleteText(fileId, op.getPosition(), op.getLength());
+                    }
+                }
+            }
+        }
+    }
+
+    /** Journal of edits made while offline, or null before login / when disabled */
+    public OfflineJournal getOfflineJournal() {
+        return offlineJournal;
+    }
+
+    // LOGIN_ACK carries our user alias (ua), FILE_CONTENT the document alias (fa)
+    private void learnAliases(Message message) {
+        SessionAliases sessionAliases = aliases;
+        if (sessionAliases != null) {
+            sessionAliases.learn(message);
+        }
+    }
+
+    /**
+     * True when arbitrary text (separators, newlines, multiple characters) can
+     * travel in a single TEXT_INSERT; otherwise the legacy one-char tokens apply.
+     */
+    public boolean supportsMultiCharInsert() {
+        // Kept across a reconnect so edits typed meanwhile use the session's encoding
+        return multiCharInsert;
+    }
+
+    // Queue a Message for the writer thread; the caller never waits on the socket
+    private void sendMessage(Message message) {
+        // Queued edits go first so the server sees operations in call order
+        if (editBatcher.hasPending()) {
+            editBatcher.flush();
+        }
+        // Edits wait for a free slot in the document's ack window instead of sleeping
+        if (ackWindowEnabled && ackWindow.submit(message)) {
+            return;
+        }
+        enqueueForWriter(message);
+    }
+
+    /**
+     * Sends a request and returns the future its reply completes. With the "cid"
+     * capability the reply is matched by correlation id (an ERROR carrying the
+     * same id fails the future); otherwise by type, in request order.
+     */
+    private CompletableFuture<Message> request(Message request, Message.MessageType replyType, boolean consume) {
+        // FILE_LIST_RESP's data section is the bare list and can't echo a cid
+        boolean correlate = correlationEnabled && replyType != Message.MessageType.FILE_LIST_RESP;
+        String correlationId = correlate ? Long.toString(correlationCounter.incrementAndGet()) : null;
+        if (correlationId != null) {
+            request.addData(Message.CORRELATION_KEY, correlationId);
+        }
+        CompletableFuture<Message> reply = dispatcher.expect(replyType, correlationId, consume)
+                .orTimeout(REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        sendMessage(request);
+        return reply;
+    }
+
+    private void enqueueForWriter(Message message) {
+        if (!writer.enqueue(message)) {
+            LOGGER.warning("Send queue rejected " + message.getType() + " - " + writer.summary());
+            handleError("Gönderim kuyruğu dolu", null);
+        }
+    }
+
+    // AckWindow releases under its document lock, from the EDT or the socket thread; never parks
+    private void enqueueReleased(Message message) {
+        if (!writer.enqueueWithoutWaiting(message)) {
+            LOGGER.warning("Writer stopped, " + message.getType() + " not sent - " + writer.summary());
+        }
+    }
+
+    // Writer thread: encode with the negotiated framing (binary frames or MTP text) and send
+    private void writeToSocket(Message message) {
+        if (binaryMode && webSocketClient != null && isConnected) {
+            try {
+                ByteBuffer frame = binaryCodec.encode(message);
+                if (wireStats != null) {
+                    wireStats.recordSent(frame.remaining());
+                }
+                webSocketClient.send(frame);
+            } catch (Exception e) {
+                LOGGER.severe("Failed to send binary WebSocket message: " + e.getMessage());
+                handleError("Mesaj gönderilemedi", e);
+            }
+            return;
+        }
+        sendWebSocketMessage(textCodec.encode(message));
     }
 
     // WebSocket mesaj gönderme
     private void sendWebSocketMessage(String message) {
         if (webSocketClient != null && isConnected) {
             try {
-                System.out.println("📤 Sending WebSocket message: " + message);
+                LOGGER.fine(() -> "📤 Sending WebSocket message (" + message.length() + " chars)");
+                if (wireStats != null) {
+                    wireStats.recordSent(message);
+                }
                 webSocketClient.send(message);
-                LOGGER.info("WebSocket message sent successfully");
             } catch (Exception e) {
                 LOGGER.severe("Failed to send WebSocket message: " + e.getMessage());
                 handleError("Mesaj gönderilemedi", e);
             }
+        } else if (reconnecting) {
+            // Edits are replayed from the ack window once the session is resumed
+            LOGGER.warning("Dropping " + message.length() + " chars while reconnecting");
         } else {
             LOGGER.warning("Cannot send message - WebSocket not connected");
             handleError("WebSocket bağlantısı yok", null);
@@ -178,22 +991,36 @@ public class NetworkManager {
 
     // Disconnect method
     public void disconnect() {
+        userInitiatedDisconnect = true;
+        reconnecting = false;
+        reconnectScheduler.shutdownNow();
+        pingMonitor.shutdown();
+        OfflineJournal journal = offlineJournal;
+        if (journal != null) {
+            journal.close();
+        }
         try {
             if (isConnected && userId != null) {
                 Message disconnectMsg = Message.createDisconnect(userId, "Client disconnected");
-                sendWebSocketMessage(disconnectMsg.serialize());
+                sendMessage(disconnectMsg);
             }
 
+            editBatcher.shutdown();
+            // DISCONNECT and any queued edits leave before the socket is closed
+            writer.shutdown(WRITER_DRAIN_TIMEOUT_MS);
+            bulkInbound.shutdown();
+            LOGGER.info("Writer stopped: " + writer.summary());
+            LOGGER.info("Inbound lanes: interactive " + getInboundLaneStats(TrafficLane.INTERACTIVE).summary()
+                    + "; bulk " + getInboundLaneStats(TrafficLane.BULK).summary());
+            otDocuments.forEach((fileId, document) -> LOGGER.info("OT " + fileId + ": " + document.summary()));
+            crdtDocuments.forEach((fileId, document) -> LOGGER.info("CRDT " + fileId + ": " + document.summary()));
+
             isConnected = false;
 
             if (webSocketClient != null) {
                 webSocketClient.close();
             }
 
-            if (executorService != null) {
-                executorService.shutdown();
-            }
-
             LOGGER.info("WebSocket client disconnected successfully");
 
         } catch (Exception e) {
@@ -206,7 +1033,7 @@ public class NetworkManager {
     public void register(String username, String password) {
         try {
             Message registerMsg = Message.createRegister(username, password);
-            sendWebSocketMessage(registerMsg.serialize());
+            sendMessage(registerMsg);
             LOGGER.info("Register request sent via WebSocket");
         } catch (Exception e) {
             handleError("Kayıt olunurken hata", e);
@@ -216,8 +1043,9 @@ public class NetworkManager {
     // Login method - WebSocket implementation
     public void login(String username, String password) {
         try {
+            openOfflineJournal(username);
             Message loginMsg = Message.createLogin(username, password);
-            sendWebSocketMessage(loginMsg.serialize());
+            sendMessage(loginMsg);
             LOGGER.info("Login request sent via WebSocket");
         } catch (Exception e) {
             handleError("Giriş yapılırken hata", e);
@@ -225,7 +1053,10 @@ public class NetworkManager {
     }
 
     // Document creation - WebSocket implementation
-    public void createDocument(String filename) {
+    /**
+     * @return completes with the server's FILE_CREATE reply
+     */
+    public CompletableFuture<Message> createDocument(String filename) {
         try {
             System.out.println("=== WEBSOCKET CREATE DOCUMENT ===");
             System.out.println("DEBUG: Creating document with name: '" + filename + "'");
@@ -245,29 +1076,33 @@ public class NetworkManager {
 
             // Create and send message
             Message createMsg = Message.createFileCreate(userId, cleanFilename);
-            String rawMessage = createMsg.serialize();
 
             System.out.println("DEBUG: Document creation request - UserId: " + userId + ", Filename: " + cleanFilename);
-            System.out.println("DEBUG: Raw WebSocket message: " + rawMessage);
+            System.out.println("DEBUG: WebSocket message: " + createMsg);
 
             // Send via WebSocket
-            sendWebSocketMessage(rawMessage);
+            CompletableFuture<Message> reply = request(createMsg, Message.MessageType.FILE_CREATE, false);
 
             LOGGER.info("Document creation request sent via WebSocket - UserId: " + userId + ", Filename: "
                     + cleanFilename);
             System.out.println("SUCCESS: FILE_CREATE WebSocket message sent successfully");
+            return reply;
 
         } catch (Exception e) {
             System.err.println("ERROR: Failed to create document '" + filename + "': " + e.getMessage());
             e.printStackTrace();
             handleError("Doküman oluşturulurken hata oluştu", e);
             LOGGER.severe("Document creation error: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
         }
 
     }
 
     // Document opening - WebSocket implementation
-    public void openDocument(String fileId) {
+    /**
+     * @return completes with the first FILE_CONTENT (chunk) of the document
+     */
+    public CompletableFuture<Message> openDocument(String fileId) {
         try {
             if (fileId == null || fileId.trim().isEmpty()) {
                 throw new IllegalArgumentException("Dosya ID boş olamaz");
@@ -278,17 +1113,22 @@ public class NetworkManager {
             }
 
             Message openMsg = Message.createFileOpen(userId, fileId.trim());
-            sendWebSocketMessage(openMsg.serialize());
+            CompletableFuture<Message> reply = request(openMsg, Message.MessageType.FILE_CONTENT, false);
 
             LOGGER.info("Document open request sent via WebSocket: " + fileId);
+            return reply;
         } catch (Exception e) {
             handleError("Doküman açılırken hata", e);
+            return CompletableFuture.failedFuture(e);
         }
 
     }
 
     // Document deletion - WebSocket implementation
-    public void deleteDocument(String fileId) {
+    /**
+     * @return completes with the FILE_DELETE_ACK (check its status)
+     */
+    public CompletableFuture<Message> deleteDocument(String fileId) {
         try {
             System.out.println("=== WEBSOCKET DELETE DOCUMENT ===");
             System.out.println("DEBUG: Deleting document with fileId: '" + fileId + "'");
@@ -322,29 +1162,38 @@ public class NetworkManager {
 
             // Create and send delete message
             Message deleteMsg = Message.createFileDelete(userId, cleanFileId);
-            String rawMessage = deleteMsg.serialize();
 
             System.out.println("DEBUG: Delete request - UserId: " + userId + ", FileId: " + cleanFileId);
-            System.out.println("DEBUG: Raw WebSocket delete message: " + rawMessage);
+            System.out.println("DEBUG: WebSocket delete message: " + deleteMsg);
 
             // Send via WebSocket
-            sendWebSocketMessage(rawMessage);
+            CompletableFuture<Message> reply = request(deleteMsg, Message.MessageType.FILE_DELETE_ACK, false);
 
             LOGGER.info(
                     "Document deletion request sent via WebSocket - UserId: " + userId + ", FileId: " + cleanFileId);
             System.out.println("SUCCESS: FILE_DELETE WebSocket message sent successfully");
+            return reply;
 
         } catch (Exception e) {
             System.err.println("ERROR: Failed to delete document '" + fileId + "': " + e.getMessage());
             e.printStackTrace();
             handleError("Doküman silinirken hata oluştu", e);
             LOGGER.severe("Document deletion error: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
         }
 
     }
 
     // File list request - WebSocket implementation
-    public void requestFileList() {
+    /**
+     * @return completes with the FILE_LIST_RESP
+     */
+    public CompletableFuture<Message> requestFileList() {
+        return requestFileList(false);
+    }
+
+    // consume: the reply goes only to the future, not to the FILE_LIST_RESP handler
+    private CompletableFuture<Message> requestFileList(boolean consume) {
         try {
             System.out.println("=== WEBSOCKET REQUEST FILE LIST ===");
 
@@ -354,19 +1203,19 @@ public class NetworkManager {
             }
 
             Message listMsg = Message.createFileList(userId);
-            String rawMessage = listMsg.serialize();
 
             System.out.println("DEBUG: Sending FILE_LIST request via WebSocket");
-            System.out.println("DEBUG: Raw WebSocket message: " + rawMessage);
 
-            sendWebSocketMessage(rawMessage);
+            CompletableFuture<Message> reply = request(listMsg, Message.MessageType.FILE_LIST_RESP, consume);
 
             System.out.println("SUCCESS: FILE_LIST WebSocket request sent");
+            return reply;
 
         } catch (Exception e) {
             System.err.println("ERROR: Failed to request file list: " + e.getMessage());
             e.printStackTrace();
             handleError("Dosya listesi alınırken hata", e);
+            return CompletableFuture.failedFuture(e);
         }
 
     }
@@ -379,36 +1228,72 @@ public class NetworkManager {
                 return;
             }
 
-            if (!isConnected()) {
+            if (journalIfOffline(fileId, position, text, 0)) {
+                return;
+            }
+
+            if (!canQueueEdits()) {
                 throw new IllegalStateException("WebSocket sunucusuna bağlı değil");
             }
 
+            // "crdt": the replica takes the edit first and hands out its ids
+            CrdtDocument replica = crdtEnabled ? crdtDocuments.get(fileId) : null;
+            long origin = CrdtDocument.ROOT;
+            long firstId = CrdtDocument.ROOT;
+            if (replica != null) {
+                origin = replica.originAt(position);
+                firstId = replica.localInsert(position, text);
+            }
+
+            // Large pastes/loads go out as bulk-lane fragments so keystrokes can interleave
+            if (LANES_ENABLED && supportsMultiCharInsert() && text.length() > BULK_CHARS) {
+                sendFragmented(fileId, position, text, firstId, origin);
+                return;
+            }
+
             // Enhanced message creation with proper escaping
-            String data;
-            if (text.equals(" ")) {
-                data = "position:" + position + ",text:__SPACE__,userId:" + this.userId;
+            String wireText;
+            if (batchingEnabled) {
+                editBatcher.insert(this.userId, fileId, position, text);
+                return;
+
+            } else if (supportsMultiCharInsert()) {
+                // Codec handles separators and newlines - send the text as-is
+                wireText = text;
+
+            } else if (text.length() > 1 && !text.equals("\r\n")) {
+                // Legacy server: one character per frame
+                for (int i = 0; i < text.length(); i++) {
+                    insertText(fileId, position + i, String.valueOf(text.charAt(i)));
+                }
+                return;
+
+            } else if (text.equals(" ")) {
+                wireText = "__SPACE__";
                 System.out.println("DEBUG: Space character encoded as __SPACE__");
 
             } else if (text.equals("\n")) {
-                data = "position:" + position + ",text:__NEWLINE__,userId:" + this.userId;
+                wireText = "__NEWLINE__";
                 System.out.println("DEBUG: *** NEWLINE character encoded as __NEWLINE__ ***");
 
             } else if (text.equals("\r\n")) {
-                data = "position:" + position + ",text:__CRLF__,userId:" + this.userId;
+                wireText = "__CRLF__";
                 System.out.println("DEBUG: CRLF encoded as __CRLF__");
 
             } else if (text.equals("\t")) {
-                data = "position:" + position + ",text:__TAB__,userId:" + this.userId;
+                wireText = "__TAB__";
                 System.out.println("DEBUG: Tab character encoded as __TAB__");
 
             } else {
-                data = "position:" + position + ",text:" + text + ",userId:" + this.userId;
+                wireText = text;
             }
 
-            System.out.println("DEBUG: Final insertText data: '" + data + "'");
+            Message insertMsg = withSenderField(withCrdtIds(trackEdit(
+                    Message.createTextInsert(this.userId, fileId, position, wireText), true, position, text.length()),
+                    firstId, origin, 0));
 
             // Send with enhanced message creation
-            sendMessageSafe("TEXT_INSERT", this.userId, fileId, data);
+            sendMessageSafe(insertMsg);
 
             LOGGER.info("insertText: Sent via WebSocket - pos:" + position + " text:'" +
                     (text.equals("\n") ? "NEWLINE" : text.equals(" ") ? "SPACE" : text) + "'");
@@ -420,16 +1305,83 @@ public class NetworkManager {
 
     }
 
+    // Consecutive TEXT_INSERTs of at most BULK_CHARS each; a surrogate pair is never split
+    private void sendFragmented(String fileId, int position, String text, long firstId, long origin) {
+        if (editBatcher.hasPending()) {
+            editBatcher.flush();
+        }
+        int fragments = 0;
+        for (int offset = 0; offset < text.length(); fragments++) {
+            int end = Math.min(text.length(), offset + BULK_CHARS);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            // Each fragment is its own revision on the server
+            sendMessageSafe(withSenderField(withCrdtIds(trackEdit(Message.createTextInsert(this.userId, fileId,
+                    position + offset, text.substring(offset, end)), true, position + offset, end - offset),
+                    firstId, origin, offset)));
+            offset = end;
+        }
+        LOGGER.info("insertText: " + text.length() + " chars sent as " + fragments + " bulk fragments");
+    }
+
+    // "ot": the frame carries the revision it was typed against and joins the document's pending ops
+    private Message trackEdit(Message editMsg, boolean insert, int position, int length) {
+        OtDocument document = otEnabled ? otDocuments.get(editMsg.getFileId()) : null;
+        if (document != null) {
+            editMsg.addData(Message.REVISION_KEY,
+                    insert ? document.localInsert(position, length) : document.localDelete(position, length));
+        }
+        return editMsg;
+    }
+
+    // "crdt": id of the frame's first char and the char to its left; a fragment's left
+    // neighbour is the last char of the previous fragment
+    private static Message withCrdtIds(Message insertMsg, long firstId, long origin, int offset) {
+        if (firstId == CrdtDocument.ROOT) {
+            return insertMsg;
+        }
+        int site = CrdtDocument.siteOf(firstId);
+        int clock = CrdtDocument.clockOf(firstId) + offset;
+        insertMsg.addData(Message.CRDT_ID_KEY, CrdtDocument.formatId(CrdtDocument.id(site, clock)));
+        insertMsg.addData(Message.CRDT_ORIGIN_KEY,
+                CrdtDocument.formatId(offset == 0 ? origin : CrdtDocument.id(site, clock - 1)));
+        return insertMsg;
+    }
+
+    // Legacy servers read the sender from the data section; with aliases the header "#n" is enough
+    private Message withSenderField(Message editMsg) {
+        SessionAliases sessionAliases = aliases;
+        if (sessionAliases == null || !sessionAliases.hasUserAlias(this.userId)) {
+            editMsg.addData("userId", this.userId);
+        }
+        return editMsg;
+    }
+
     // Text deletion - WebSocket implementation
     public void deleteText(String fileId, int position, int length) {
         try {
-            if (!isConnected()) {
+            if (length <= 0 || journalIfOffline(fileId, position, null, length)) {
+                return;
+            }
+
+            if (!canQueueEdits()) {
                 throw new IllegalStateException("WebSocket sunucusuna bağlı değil");
             }
 
-            String data = "position:" + position + ",length:" + length + ",userId:" + this.userId;
+            if (batchingEnabled) {
+                editBatcher.delete(this.userId, fileId, position, length);
+                return;
+            }
+
+            Message deleteMsg = withSenderField(trackEdit(Message.createTextDelete(this.userId, fileId, position, length),
+                    false, position, length));
+            CrdtDocument replica = crdtEnabled ? crdtDocuments.get(fileId) : null;
+            if (replica != null) {
+                deleteMsg.addData(Message.CRDT_IDS_KEY, replica.localDelete(position, length));
+            }
 
-            sendMessageSafe("TEXT_DELETE", this.userId, fileId, data);
+            sendMessageSafe(deleteMsg);
 
             LOGGER.info("deleteText: Metin silme isteği WebSocket ile gönderildi - FileId: " + fileId +
                     ", Position: " + position + ", Length: " + length);
@@ -441,98 +1393,57 @@ public class NetworkManager {
 
     }
 
-    // Document update - WebSocket implementation
-    public void updateDocument(String fileId, String content) {
-        if (content != null && !content.isEmpty()) {
-            insertText(fileId, 0, content);
-        }
-    }
-
     // Document save - WebSocket implementation
-    public void saveDocument(String fileId) {
+    /**
+     * @return with the "cid" capability, completes with the server's SAVE reply;
+     *         legacy servers don't answer SAVE, so it completes once the request is queued
+     */
+    public CompletableFuture<Message> saveDocument(String fileId) {
         try {
             if (!isConnected()) {
                 throw new IllegalStateException("WebSocket sunucusuna bağlı değil");
             }
 
             Message saveMsg = Message.createSave(userId, fileId);
-            sendWebSocketMessage(saveMsg.serialize());
+            CompletableFuture<Message> reply;
+            if (correlationEnabled) {
+                reply = request(saveMsg, Message.MessageType.SAVE, false);
+            } else {
+                sendMessage(saveMsg);
+                reply = CompletableFuture.completedFuture(saveMsg);
+            }
 
             LOGGER.info("Document save request sent via WebSocket: " + fileId);
+            return reply;
         } catch (Exception e) {
             handleError("Doküman kaydedilirken hata", e);
+            return CompletableFuture.failedFuture(e);
         }
 
     }
 
     // Enhanced message sending with WebSocket
-    private void sendMessageSafe(String type, String userId, String fileId, String data) {
-        if (isConnected() && webSocketClient != null) {
+    private void sendMessageSafe(Message message) {
+        if (canQueueEdits() && webSocketClient != null) {
             try {
-                // Construct message manually with newline protection
-                StringBuilder messageBuilder = new StringBuilder();
-                messageBuilder.append(type).append(DELIMITER);
-                messageBuilder.append(userId != null ? userId : "null").append(DELIMITER);
-                messageBuilder.append(fileId != null ? fileId : "null").append(DELIMITER);
-                messageBuilder.append(data != null ? data : "empty").append(DELIMITER);
-                messageBuilder.append(System.currentTimeMillis());
-                messageBuilder.append(MESSAGE_END);
-
-                String finalMessage = messageBuilder.toString();
-
-                // Debug for newline messages
-                if (data != null && data.contains("__NEWLINE__")) {
-                    System.out.println("=== NEWLINE MESSAGE DEBUG ===");
-                    System.out.println(
-                            "DEBUG: Constructed WebSocket message: '" + finalMessage.replace("\n", "\\n") + "'");
-                    System.out.println("DEBUG: Message length: " + finalMessage.length());
-                    System.out.println(
-                            "DEBUG: Pipe count: " + (finalMessage.length() - finalMessage.replace("|", "").length()));
-                    System.out.println("DEBUG: Ends with newline: " + finalMessage.endsWith("\n"));
-                    System.out.println("========================");
-                }
-
                 // Send via WebSocket
-                webSocketClient.send(finalMessage);
-
-                System.out.println("DEBUG: WebSocket message sent successfully: " + type);
-
+                sendMessage(message);
             } catch (Exception e) {
                 LOGGER.severe("sendMessageSafe error: " + e.getMessage());
                 e.printStackTrace();
             }
         } else {
-            System.err.println("ERROR: Cannot send message - WebSocket not connected");
+            LOGGER.fine(() -> "Cannot send " + message.getType() + " - WebSocket not connected");
         }
 
     }
 
-    // Complete server message handling - migrated from Socket version
+    // Complete server message handling - routed by message type
     private void handleServerMessage(String rawMessage) {
         try {
-            System.out.println("=== WEBSOCKET RAW MESSAGE DEBUG ===");
-            System.out.println("Raw WebSocket mesaj: '" + rawMessage + "'");
-
-            // Special handling for FILE_LIST_RESP (just like Socket version)
-            if (rawMessage.startsWith("FILE_LIST_RESP|")) {
-                System.out.println("DEBUG: FILE_LIST_RESP özel işleme başlıyor...");
-                handleFileListResponseRaw(rawMessage);
-                return;
-            }
-
-            // Special handling for FILE_DELETE_ACK
-            if (rawMessage.startsWith("FILE_DELETE_ACK|")) {
-                System.out.println("DEBUG: FILE_DELETE_ACK özel işleme başlıyor...");
-                handleFileDeleteAckRaw(rawMessage);
-                return;
-            }
-
-            // Normal message deserialization for other message types
-            Message message = Message.deserialize(rawMessage);
-
-            if (message != null && messageHandler != null) {
-                messageHandler.accept(message);
-            } else if (message == null) {
+            // Only the TYPE token is inspected here; FILE_LIST_RESP has its own
+            // registered decoder, unsubscribed types are never parsed
+            if (!dispatcher.dispatch(rawMessage)) {
                 LOGGER.warning("Failed to deserialize WebSocket message: " + rawMessage);
             }
 
@@ -543,155 +1454,81 @@ public class NetworkManager {
 
     }
 
-    /**
-     * - FILE_LIST_RESP mesajlarını özel olarak işler (Socket kodundan migrate)
-     */
-    private void handleFileListResponseRaw(String rawMessage) {
-        try {
-            System.out.println("=== WEBSOCKET FILE_LIST_RESP HANDLER ===");
-
-            // 🔧 FIX: Remove any trailing newlines or whitespace
-            String cleanMessage = rawMessage.trim();
-            if (cleanMessage.endsWith("\n")) {
-                cleanMessage = cleanMessage.substring(0, cleanMessage.length() - 1);
-            }
-
-            System.out.println("DEBUG: Cleaned message: '" + cleanMessage + "'");
-
-            // Format:
-            // FILE_LIST_RESP|userId|fileId|files:file1:file1.txt:0|file2:file2.txt:0|...|timestamp
-            String[] parts = cleanMessage.split("\\|");
-
-            if (parts.length < 4) {
-                System.err.println("ERROR: Geçersiz FILE_LIST_RESP formatı - parts: " + parts.length);
-                return;
-            }
-
-            String userId = "null".equals(parts[1]) ? null : parts[1];
-            String fileId = "null".equals(parts[2]) ? null : parts[2];
-
-            // 🔧 FIX: Clean timestamp before parsing
-            String timestampStr = parts[parts.length - 1].trim();
-            System.out.println("DEBUG: Raw timestamp string: '" + timestampStr + "'");
-
-            long timestamp;
-            try {
-                timestamp = Long.parseLong(timestampStr);
-                System.out.println("DEBUG: Parsed timestamp successfully: " + timestamp);
-            } catch (NumberFormatException e) {
-                System.err.println("ERROR: Failed to parse timestamp: '" + timestampStr + "'");
-                timestamp = System.currentTimeMillis();
-            }
-
-            // Files data'yı birleştir (Part[3]'ten Part[length-2]'ye kadar)
-            StringBuilder filesDataBuilder = new StringBuilder();
-
-            // İlk dosya part'ı (files: prefix'ini temizle)
-            if (parts[3].startsWith("files:")) {
-                filesDataBuilder.append(parts[3].substring("files:".length()));
-            }
-
-            // Diğer dosya part'larını ekle
-            for (int i = 4; i < parts.length - 1; i++) {
-                filesDataBuilder.append("|").append(parts[i]);
-            }
-
-            String finalFilesData = filesDataBuilder.toString();
-            System.out.println("DEBUG: WebSocket birleştirilmiş files data: '" + finalFilesData + "'");
-
-            // Manuel message oluştur
-            Message fileListMessage = new Message(Message.MessageType.FILE_LIST_RESP, userId, fileId);
-            fileListMessage.addData("files", finalFilesData);
-
-            // Normal handler'a gönder
-            if (messageHandler != null) {
-                messageHandler.accept(fileListMessage);
-            }
-
-            System.out.println("SUCCESS: FILE_LIST_RESP WebSocket message processed");
+    // Common delivery path for decoded (binary) frames
+    private void dispatchMessage(Message message) {
+        dispatcher.dispatch(message);
+    }
 
-        } catch (Exception e) {
-            System.err.println("ERROR: FILE_LIST_RESP WebSocket parse hatası: " + e.getMessage());
-            e.printStackTrace();
+    private void decodeAndDispatch(ByteBuffer bytes) {
+        Message message = binaryCodec.decode(bytes);
+        if (message == null) {
+            LOGGER.warning("Failed to decode binary WebSocket message (" + bytes.remaining() + " bytes)");
+            return;
         }
+        dispatchMessage(message);
     }
 
     /**
-     * - FILE_DELETE_ACK mesajlarını özel olarak işler (Socket kodundan migrate)
+     * Socket thread: interactive frames are delivered inline, bulk frames on the
+     * bulk thread in arrival order. Frames that must not overtake a pending bulk
+     * frame follow it: catalog changes behind a FILE_LIST_RESP, everything behind
+     * a FILE_CONTENT (it teaches the document alias and precedes its TEXT_UPDATEs).
+     * A follower is counted with the frame it follows until it is handled itself, so
+     * inline delivery resumes only after the bulk thread has drained them all: edits
+     * and TEXT_ACKs stay in wire order and a session's inbound ring has one producer
+     * at a time (the hand-over is ordered by the counter).
      */
-    private void handleFileDeleteAckRaw(String rawMessage) {
-        try {
-            System.out.println("=== WEBSOCKET FILE DELETE ACK HANDLER ===");
-
-            // 🔧 FIX: Remove any trailing newlines or whitespace
-            String cleanMessage = rawMessage.trim();
-            if (cleanMessage.endsWith("\n")) {
-                cleanMessage = cleanMessage.substring(0, cleanMessage.length() - 1);
-            }
-
-            System.out.println("DEBUG: Raw WebSocket FILE_DELETE_ACK message: '" + cleanMessage + "'");
-
-            // Format: FILE_DELETE_ACK|userId|fileId|status:success,message:Dosya
-            // silindi|timestamp
-            String[] parts = cleanMessage.split("\\|");
-
-            if (parts.length < 4) {
-                System.err.println("ERROR: Geçersiz FILE_DELETE_ACK formatı - parts: " + parts.length);
-                return;
-            }
-
-            String userId = "null".equals(parts[1]) ? null : parts[1];
-            String fileId = "null".equals(parts[2]) ? null : parts[2];
-            String dataSection = parts[3];
+    private void receive(Message.MessageType type, Runnable delivery) {
+        long received = System.nanoTime();
+        boolean content = LANES_ENABLED
+                && (type == Message.MessageType.FILE_CONTENT || pendingBulkContent.get() > 0);
+        boolean list = LANES_ENABLED && (type == Message.MessageType.FILE_LIST_RESP
+                || (pendingBulkLists.get() > 0 && (type == Message.MessageType.FILE_CREATE
+                        || type == Message.MessageType.FILE_DELETE_ACK)));
+        if (!content && !list) {
+            delivery.run();
+            inboundLaneStats[TrafficLane.INTERACTIVE.ordinal()].record(System.nanoTime() - received);
+            return;
+        }
 
-            // 🔧 FIX: Clean timestamp before parsing
-            String timestampStr = parts.length > 4 ? parts[4].trim() : String.valueOf(System.currentTimeMillis());
-            long timestamp;
-            try {
-                timestamp = Long.parseLong(timestampStr);
-            } catch (NumberFormatException e) {
-                System.err.println("ERROR: Failed to parse DELETE timestamp: '" + timestampStr + "'");
-                timestamp = System.currentTimeMillis();
-            }
-
-            System.out.println("DEBUG: WebSocket parsed - userId: " + userId + ", fileId: " + fileId);
-
-            // Parse data section
-            Map<String, String> dataMap = new HashMap<>();
-            if (!"empty".equals(dataSection)) {
-                String[] dataPairs = dataSection.split(",");
-                for (String pair : dataPairs) {
-                    String[] keyValue = pair.split(":", 2);
-                    if (keyValue.length == 2) {
-                        dataMap.put(keyValue[0].trim(), keyValue[1].trim());
+        if (list) {
+            pendingBulkLists.incrementAndGet();
+        }
+        if (content) {
+            pendingBulkContent.incrementAndGet();
+        }
+        try {
+            bulkInbound.execute(() -> {
+                try {
+                    delivery.run();
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Bulk message handling error", e);
+                } finally {
+                    if (list) {
+                        pendingBulkLists.decrementAndGet();
                     }
+                    if (content) {
+                        pendingBulkContent.decrementAndGet();
+                    }
+                    inboundLaneStats[TrafficLane.BULK.ordinal()].record(System.nanoTime() - received);
                 }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            if (list) {
+                pendingBulkLists.decrementAndGet();
             }
-
-            String status = dataMap.get("status");
-            String message = dataMap.get("message");
-            boolean success = "success".equals(status);
-
-            System.out.println("DEBUG: WebSocket delete result - success: " + success + ", message: '" + message + "'");
-
-            // Manuel message oluştur
-            Message deleteAckMessage = new Message(Message.MessageType.FILE_DELETE_ACK, userId, fileId);
-            deleteAckMessage.addData("status", status != null ? status : "fail");
-            deleteAckMessage.addData("message", message != null ? message : "Bilinmeyen hata");
-
-            // Normal handler'a gönder
-            if (messageHandler != null) {
-                messageHandler.accept(deleteAckMessage);
+            if (content) {
+                pendingBulkContent.decrementAndGet();
             }
-
-            System.out.println("SUCCESS: FILE_DELETE_ACK WebSocket message processed");
-
-        } catch (Exception e) {
-            System.err.println("ERROR: FILE_DELETE_ACK WebSocket parse hatası: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.fine("Bulk frame received after disconnect - dropped");
         }
     }
 
+    /** Receive-to-handled latency of the inbound lane */
+    public LatencyStats getInboundLaneStats(TrafficLane lane) {
+        return inboundLaneStats[lane.ordinal()];
+    }
+
     // Advanced message checking for WebSocket (migrated from Socket version)
     private boolean isCompleteMessage(String message) {
         if (message == null || message.trim().isEmpty()) {
@@ -752,8 +1589,19 @@ public class NetworkManager {
     }
 
     // Handler setters
+    // Catch-all handler: every message type without its own handler is parsed and delivered here
     public void setMessageHandler(Consumer<Message> handler) {
-        this.messageHandler = handler;
+        dispatcher.setFallbackHandler(handler);
+    }
+
+    // Per-type handler: only subscribed types are parsed
+    public void registerHandler(Message.MessageType type, Consumer<Message> handler) {
+        dispatcher.registerHandler(type, handler);
+    }
+
+    // Drops all UI handlers (protocol-level handlers stay registered)
+    public void clearHandlers() {
+        dispatcher.clearHandlers();
     }
 
     public void setErrorHandler(Consumer<String> handler) {
@@ -0,0 +1,372 @@
+package org.multiuserwordeditor.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * - Bağlantı yokken yapılan düzenlemelerin doküman başına, sadece sona eklenen,
+ *   belleğe eşlenmiş (memory-mapped) günlük dosyası
+ * - Kayıt: [tür 1B][pozisyon 4B][uzunluk 4B][UTF-8 metin]; tür baytı en son yazılır,
+ *   yarım kalmış kayıt tür=0 olarak görünür ve okunmaz
+ * - Dosyalar yeniden başlatmada okunur; önceki oturumdan kalan düzenlemeler de
+ *   bir sonraki girişte gönderilir
+ * - Gönderimden önce art arda eklemeler/silmeler EditBatcher ile aynı kurallarla birleştirilir
+ */
+public class OfflineJournal {
+    private static final Logger LOGGER = Logger.getLogger(OfflineJournal.class.getName());
+
+    public static final String FILE_SUFFIX = ".journal";
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+    public static final long DEFAULT_FSYNC_INTERVAL_MS = 1000;
+
+    private static final byte END = 0;
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = 1 + 4 + 4;
+
+    /**
+     * Diske zorla yazma (MappedByteBuffer.force) sıklığı
+     */
+    public enum FsyncPolicy {
+        ALWAYS,   // her kayıttan sonra
+        INTERVAL, // son zorlamadan en az fsyncIntervalMs geçtiyse
+        NEVER     // işletim sistemine bırakılır (kapatırken yine zorlanır)
+    }
+
+    private final File directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final Map<String, DocumentJournal> journals = new ConcurrentHashMap<>();
+
+    public OfflineJournal(File directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = Math.max(0, fsyncIntervalMs);
+        recover();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    // Önceki çalıştırmadan kalan günlükleri açar
+    private void recover() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            String fileId = decodeFileId(name.substring(0, name.length() - FILE_SUFFIX.length()));
+            try {
+                DocumentJournal journal = new DocumentJournal(file);
+                if (journal.records > 0) {
+                    journals.put(fileId, journal);
+                    LOGGER.info("Recovered offline journal for " + fileId + ": " + journal.records + " edits");
+                } else {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Offline journal could not be read: " + file, e);
+            }
+        }
+    }
+
+    public synchronized void appendInsert(String fileId, int position, String text) throws IOException {
+        journal(fileId).append(INSERT, position, text.length(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void appendDelete(String fileId, int position, int length) throws IOException {
+        journal(fileId).append(DELETE, position, length, new byte[0]);
+    }
+
+    private DocumentJournal journal(String fileId) throws IOException {
+        DocumentJournal journal = journals.get(fileId);
+        if (journal == null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Offline journal directory could not be created: " + directory);
+            }
+            journal = new DocumentJournal(new File(directory, encodeFileId(fileId) + FILE_SUFFIX));
+            journals.put(fileId, journal);
+            LOGGER.info("Offline journal started for " + fileId + " (fsync " + fsyncPolicy + ")");
+        }
+        return journal;
+    }
+
+    public boolean hasPending(String fileId) {
+        DocumentJournal journal = journals.get(fileId);
+        return journal != null && journal.records > 0;
+    }
+
+    public boolean hasPending() {
+        for (DocumentJournal journal : journals.values()) {
+            if (journal.records > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getPendingCount() {
+        int count = 0;
+        for (DocumentJournal journal : journals.values()) {
+            count += journal.records;
+        }
+        return count;
+    }
+
+    /**
+     * Bir dokümanın birleştirilmiş düzenlemelerini verir ve günlüğünü boşaltır
+     */
+    public synchronized List<Op> drain(String fileId) {
+        DocumentJournal journal = journals.get(fileId);
+        if (journal == null || journal.records == 0) {
+            return List.of();
+        }
+        List<Op> ops = compact(journal.read());
+        LOGGER.info("Replaying offline journal for " + fileId + ": " + journal.records + " edits -> "
+                + ops.size() + " ops");
+        journal.clear();
+        return ops;
+    }
+
+    /** Bekleyen düzenlemesi olan dokümanlar */
+    public List<String> getPendingFileIds() {
+        List<String> fileIds = new ArrayList<>();
+        journals.forEach((fileId, journal) -> {
+            if (journal.records > 0) {
+                fileIds.add(fileId);
+            }
+        });
+        return fileIds;
+    }
+
+    public synchronized void close() {
+        for (DocumentJournal journal : journals.values()) {
+            journal.close();
+        }
+        journals.clear();
+    }
+
+    // Art arda yazma, backspace / delete dizileri ve yeni yazılanın sonundan silme tek işleme iner
+    static List<Op> compact(List<Op> ops) {
+        List<Op> compacted = new ArrayList<>();
+        for (Op op : ops) {
+            Op last = compacted.isEmpty() ? null : compacted.get(compacted.size() - 1);
+            if (op.isInsert()) {
+                if (last != null && last.isInsert() && op.position == last.position + last.text.length()) {
+                    last.text.append(op.text);
+                } else {
+                    compacted.add(op);
+                }
+            } else if (last != null && last.isInsert() && op.position >= last.position
+                    && op.position + op.length == last.position + last.text.length()) {
+                last.text.setLength(op.position - last.position);
+                if (last.text.length() == 0) {
+                    compacted.remove(compacted.size() - 1);
+                }
+            } else if (last != null && !last.isInsert() && op.position + op.length == last.position) {
+                last.position = op.position;
+                last.length += op.length;
+            } else if (last != null && !last.isInsert() && op.position == last.position) {
+                last.length += op.length;
+            } else {
+                compacted.add(op);
+            }
+        }
+        return compacted;
+    }
+
+    // fileId dosya adında güvenli olmayan karakterler içerebilir
+    private static String encodeFileId(String fileId) {
+        StringBuilder name = new StringBuilder();
+        for (char c : fileId.toCharArray()) {
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%04x", (int) c));
+            }
+        }
+        return name.toString();
+    }
+
+    private static String decodeFileId(String name) {
+        StringBuilder fileId = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 4 < name.length()) {
+                fileId.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                fileId.append(c);
+            }
+        }
+        return fileId.toString();
+    }
+
+    /**
+     * Günlükteki tek düzenleme
+     */
+    public static final class Op {
+        int position;
+        int length; // silme için
+        StringBuilder text; // ekleme için
+
+        static Op insert(int position, String text) {
+            Op op = new Op();
+            op.position = position;
+            op.text = new StringBuilder(text);
+            return op;
+        }
+
+        static Op delete(int position, int length) {
+            Op op = new Op();
+            op.position = position;
+            op.length = length;
+            return op;
+        }
+
+        public boolean isInsert() {
+            return text != null;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int getLength() {
+            return isInsert() ? text.length() : length;
+        }
+
+        public String getText() {
+            return text != null ? text.toString() : null;
+        }
+    }
+
+    /**
+     * Tek dokümanın eşlenmiş dosyası; dolunca iki katı boyutla yeniden eşlenir
+     */
+    private final class DocumentJournal {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int writeOffset;
+        private int records;
+        private long lastForceMillis = System.currentTimeMillis();
+
+        DocumentJournal(File path) throws IOException {
+            this.file = new RandomAccessFile(path, "rw");
+            this.channel = file.getChannel();
+            map(Math.max(DEFAULT_SEGMENT_BYTES, (int) Math.min(Integer.MAX_VALUE, channel.size())));
+            scan();
+        }
+
+        private void map(int size) throws IOException {
+            if (buffer != null) {
+                buffer.force();
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        // Geçerli kayıtların sonunu bulur
+        private void scan() {
+            int offset = 0;
+            int count = 0;
+            while (offset + HEADER_BYTES <= buffer.capacity()) {
+                byte kind = buffer.get(offset);
+                if (kind != INSERT && kind != DELETE) {
+                    break;
+                }
+                int next = offset + HEADER_BYTES + (kind == INSERT ? buffer.getInt(offset + 5) : 0);
+                if (next > buffer.capacity()) {
+                    break;
+                }
+                offset = next;
+                count++;
+            }
+            writeOffset = offset;
+            records = count;
+        }
+
+        void append(byte kind, int position, int length, byte[] text) throws IOException {
+            int needed = HEADER_BYTES + text.length + 1; // +1 bitiş işareti
+            if (writeOffset + needed > buffer.capacity()) {
+                long size = Math.max((long) buffer.capacity() * 2, (long) writeOffset + needed);
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Offline journal full");
+                }
+                map((int) size);
+            }
+
+            int offset = writeOffset;
+            buffer.putInt(offset + 1, position);
+            buffer.putInt(offset + 5, kind == INSERT ? text.length : length);
+            for (int i = 0; i < text.length; i++) {
+                buffer.put(offset + HEADER_BYTES + i, text[i]);
+            }
+            buffer.put(offset + HEADER_BYTES + text.length, END);
+            // Kayıt, tür baytı yazıldığında geçerli olur
+            buffer.put(offset, kind);
+            writeOffset = offset + HEADER_BYTES + text.length;
+            records++;
+
+            long now = System.currentTimeMillis();
+            if (fsyncPolicy == FsyncPolicy.ALWAYS
+                    || (fsyncPolicy == FsyncPolicy.INTERVAL && now - lastForceMillis >= fsyncIntervalMs)) {
+                buffer.force();
+                lastForceMillis = now;
+            }
+        }
+
+        List<Op> read() {
+            List<Op> ops = new ArrayList<>(records);
+            int offset = 0;
+            for (int i = 0; i < records; i++) {
+                byte kind = buffer.get(offset);
+                int position = buffer.getInt(offset + 1);
+                int length = buffer.getInt(offset + 5);
+                if (kind == INSERT) {
+                    byte[] bytes = new byte[length];
+                    for (int j = 0; j < length; j++) {
+                        bytes[j] = buffer.get(offset + HEADER_BYTES + j);
+                    }
+                    ops.add(Op.insert(position, new String(bytes, StandardCharsets.UTF_8)));
+                    offset += HEADER_BYTES + length;
+                } else {
+                    ops.add(Op.delete(position, length));
+                    offset += HEADER_BYTES;
+                }
+            }
+            return ops;
+        }
+
+        // Dosya silinmez (eşlenmiş dosya bazı sistemlerde silinemez); baştan yazılmak üzere boşaltılır
+        void clear() {
+            buffer.put(0, END);
+            buffer.force();
+            lastForceMillis = System.currentTimeMillis();
+            writeOffset = 0;
+            records = 0;
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+                file.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Offline journal could not be closed", e);
+            }
+        }
+    }
+}
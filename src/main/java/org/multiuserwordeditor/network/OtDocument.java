@@ -0,0 +1,225 @@
+package org.multiuserwordeditor.network;
+
+import java.util.logging.Logger;
+
+/**
+ * - Bir dokümanın istemci tarafı operasyonel dönüşüm (OT) durumu ("ot" yeteneği)
+ * - revision: sunucudan görülen son doküman revizyonu; her yerel düzenleme çerçevesi
+ *   yazıldığı andaki revizyonla ("rev") gönderilir
+ * - Sunucunun henüz onaylamadığı yerel işlemler sırayla bekleyen tamponda tutulur;
+ *   uzak işlem uygulanmadan önce bu işlemlerin hepsine karşı dönüştürülür, bekleyen
+ *   işlemler de uzak işleme göre kaydırılır
+ * - Tampon ilkel dizilerdir ve dönüşüm sonucu tek long'a paketlenir; işlem başına
+ *   nesne oluşturulmaz
+ * - Kurallar (sunucu aynısını uygular):
+ *   aynı noktaya iki ekleme: sunucunun önce uyguladığı solda kalır;
+ *   eşzamanlı bir silme aralığının tam içine düşen ekleme silmeye katılır (ekleme boşa düşer,
+ *   silme eklenen kadar uzar); iki silmenin ortak kısmı bir kez silinir
+ * - Çağrılar senkronizedir; pratikte hepsi EDT'den gelir
+ */
+public final class OtDocument {
+    private static final Logger LOGGER = Logger.getLogger(OtDocument.class.getName());
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String fileId;
+    private int revision;
+
+    // Bekleyen yerel işlemler: [head, head + size) dairesel
+    private boolean[] inserts = new boolean[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    // Göstergeler
+    private long localOps;
+    private long remoteOps;
+    private long acknowledgedOps;
+    private long absorbedOps;
+    private int maxPending;
+
+    public OtDocument(String fileId, int revision) {
+        this.fileId = fileId;
+        this.revision = revision;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public synchronized int getRevision() {
+        return revision;
+    }
+
+    public synchronized int getPendingCount() {
+        return size;
+    }
+
+    /**
+     * Yerel ekleme bekleyen tampona girer
+     *
+     * @return çerçeveye yazılacak revizyon
+     */
+    public synchronized int localInsert(int position, int length) {
+        push(true, position, length);
+        return revision;
+    }
+
+    /**
+     * Yerel silme bekleyen tampona girer
+     *
+     * @return çerçeveye yazılacak revizyon
+     */
+    public synchronized int localDelete(int position, int length) {
+        push(false, position, length);
+        return revision;
+    }
+
+    /**
+     * TEXT_ACK: sunucu revizyonu yerel işlemlerimizle newRevision'a ulaştı;
+     * aradaki fark kadar en eski bekleyen işlem onaylanmıştır
+     */
+    public synchronized void acknowledge(int newRevision) {
+        pop(newRevision - revision);
+        revision = Math.max(revision, newRevision);
+    }
+
+    /**
+     * Uzak işlemi bekleyen yerel işlemlere karşı dönüştürür.
+     *
+     * @param remoteRevision işlem uygulandıktan sonraki sunucu revizyonu; bilinmiyorsa -1.
+     *                       revision + 1'den büyükse aradaki işlemler bizimkilerdir
+     *                       ve onaylanmış sayılır (TEXT_ACK henüz gelmemiş olabilir)
+     * @return pack(pozisyon, uzunluk); uzunluk 0 ise işlem boşa düşmüştür ve uygulanmaz
+     */
+    public synchronized long transformRemote(boolean insert, int position, int length, int remoteRevision) {
+        if (remoteRevision >= 0) {
+            pop(remoteRevision - 1 - revision);
+            revision = Math.max(revision, remoteRevision);
+        } else {
+            revision++;
+        }
+        remoteOps++;
+
+        int x = position;
+        int xl = length;
+        for (int n = 0; n < size && xl > 0; n++) {
+            int i = (head + n) & (positions.length - 1);
+            int p = positions[i];
+            int pl = lengths[i];
+            if (pl == 0) {
+                continue;
+            }
+
+            if (insert && inserts[i]) {
+                // Aynı noktada sunucudaki sıra: uzak işlem önce uygulandı, solda kalır
+                if (x <= p) {
+                    positions[i] = p + xl;
+                } else {
+                    x += pl;
+                }
+            } else if (insert) {
+                // Uzak ekleme - yerel silme [p, p + pl)
+                if (x <= p) {
+                    positions[i] = p + xl;
+                } else if (x >= p + pl) {
+                    x -= pl;
+                } else {
+                    lengths[i] = pl + xl;
+                    x = p;
+                    xl = 0;
+                    absorbedOps++;
+                }
+            } else if (inserts[i]) {
+                // Uzak silme [x, x + xl) - yerel ekleme
+                if (p <= x) {
+                    x += pl;
+                } else if (p >= x + xl) {
+                    positions[i] = p - xl;
+                } else {
+                    xl += pl;
+                    positions[i] = x;
+                    lengths[i] = 0;
+                    absorbedOps++;
+                }
+            } else {
+                // İki silme: ortak kısım bir kez silinir
+                int overlap = Math.max(0, Math.min(x + xl, p + pl) - Math.max(x, p));
+                int remotePosition = x <= p ? x : x - Math.min(pl, x - p);
+                positions[i] = p <= x ? p : p - Math.min(xl, p - x);
+                lengths[i] = pl - overlap;
+                x = remotePosition;
+                xl -= overlap;
+            }
+        }
+        return pack(x, xl);
+    }
+
+    public static long pack(int position, int length) {
+        return ((long) position << 32) | (length & 0xffffffffL);
+    }
+
+    public static int positionOf(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int lengthOf(long packed) {
+        return (int) packed;
+    }
+
+    private void push(boolean insert, int position, int length) {
+        if (size == positions.length) {
+            grow();
+        }
+        int i = (head + size) & (positions.length - 1);
+        inserts[i] = insert;
+        positions[i] = position;
+        lengths[i] = length;
+        size++;
+        localOps++;
+        maxPending = Math.max(maxPending, size);
+    }
+
+    private void pop(int count) {
+        if (count > size) {
+            // Sunucu bildiğimizden fazla işlem saydı; durum artık güvenilir değil
+            LOGGER.warning("OT revision gap for " + fileId + ": " + count + " ops acknowledged, " + size + " pending");
+            count = size;
+        }
+        if (count <= 0) {
+            return;
+        }
+        head = (head + count) & (positions.length - 1);
+        size -= count;
+        acknowledgedOps += count;
+    }
+
+    // Kapasite 2'nin kuvveti kalır; dairesel tampon düzleştirilerek kopyalanır
+    private void grow() {
+        int capacity = positions.length;
+        boolean[] newInserts = new boolean[capacity * 2];
+        int[] newPositions = new int[capacity * 2];
+        int[] newLengths = new int[capacity * 2];
+        for (int n = 0; n < size; n++) {
+            int i = (head + n) & (capacity - 1);
+            newInserts[n] = inserts[i];
+            newPositions[n] = positions[i];
+            newLengths[n] = lengths[i];
+        }
+        inserts = newInserts;
+        positions = newPositions;
+        lengths = newLengths;
+        head = 0;
+    }
+
+    public synchronized String summary() {
+        return "rev " + revision + ", " + localOps + " local / " + remoteOps + " remote ops, " + acknowledgedOps
+                + " acked, " + size + " pending (max " + maxPending + "), " + absorbedOps + " absorbed";
+    }
+
+    @Override
+    public String toString() {
+        return "OtDocument{" + fileId + ", " + summary() + "}";
+    }
+}
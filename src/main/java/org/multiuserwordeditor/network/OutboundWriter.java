@@ -0,0 +1,416 @@
+package org.multiuserwordeditor.network;
+
+import org.multiuserwordeditor.model.Message;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * - Tüm giden MTP trafiği için tek yazıcı thread
+ * - Üreticiler (EDT dahil) mesajı sınırlı, kilitsiz bir kuyruğa bırakıp hemen döner;
+ *   kodlama ve WebSocketClient.send() sadece yazıcı thread'de yapılır
+ * - Kuyruk dolunca davranış Backpressure ile seçilir; düzenlemeler (EDT'den gelir)
+ *   ve AckWindow'un saldığı mesajlar hiçbir modda beklemez
+ * - İki öncelik şeridi (TrafficLane): etkileşimli mesajlar her zaman önce yazılır,
+ *   toplu mesajlar sadece etkileşimli şerit boşken ve soketin gönderim tamponu
+ *   boşalmışken tek tek yazılır; böylece bir tuş vuruşu en fazla bir toplu parçanın
+ *   arkasında bekler
+ * - Toplu şeritte bekleyen mesajı olan dokümanın sonraki düzenlemeleri de sırayı
+ *   bozmamak için toplu şeride girer
+ */
+public class OutboundWriter {
+    private static final Logger LOGGER = Logger.getLogger(OutboundWriter.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // BLOCK modunda üreticinin yer açılmasını beklerken uyuduğu süre
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // Toplu parça için soket tamponunun boşalmasını beklerken uyuma süresi
+    private static final long BULK_PACE_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    public static final int DEFAULT_BULK_CHARS = 4096;
+
+    public enum Backpressure {
+        /**
+         * Üretici kuyrukta yer açılana kadar bekler; düzenlemeler beklemez,
+         * kapasite aşılarak kuyruğa girer ve taşma olarak sayılır
+         */
+        BLOCK,
+        /**
+         * Bekleyen düzenlemeler atılır ve yerine dokümanın tam içeriği (FILE_UPDATE)
+         * kuyruğa konur; düzenleme dışı mesajlarda BLOCK gibi davranır
+         */
+        DROP_TO_SNAPSHOT,
+        /** Mesaj reddedilir, enqueue() false döner */
+        FAIL
+    }
+
+    private final Consumer<Message> wire;
+    private final Queue<Entry> interactive = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry> bulk = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+
+    // Şeritler kapalıysa her şey etkileşimli şeritten FIFO gider
+    private volatile boolean lanesEnabled = true;
+    private volatile int bulkChars = DEFAULT_BULK_CHARS;
+    // Soketin henüz yazılmamış verisi var mı (toplu parçalar bunu bekler)
+    private volatile BooleanSupplier wireBusy = () -> false;
+    // fileId -> toplu şeritteki mesaj sayısı
+    private final Map<String, AtomicInteger> bulkByFile = new ConcurrentHashMap<>();
+    private final int capacity;
+    private volatile Backpressure backpressure;
+
+    // (userId, fileId) -> snapshot mesajı; DROP_TO_SNAPSHOT için
+    private volatile BiFunction<String, String, Message> snapshotProvider;
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    // Göstergeler
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    // Kuyruk yeniden yer açana kadar taşma bir kez loglanır
+    private volatile boolean overflowing;
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+    private final LatencyStats[] laneStats = {
+            new LatencyStats(LatencyStats.DEFAULT_WINDOW_SIZE), new LatencyStats(LatencyStats.DEFAULT_WINDOW_SIZE) };
+
+    public OutboundWriter(Consumer<Message> wire, int capacity, Backpressure backpressure) {
+        this.wire = wire;
+        this.capacity = Math.max(1, capacity);
+        this.backpressure = backpressure;
+        this.writerThread = new Thread(this::drainLoop, "mtp-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void setBackpressure(Backpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    public void setSnapshotProvider(BiFunction<String, String, Message> snapshotProvider) {
+        this.snapshotProvider = snapshotProvider;
+    }
+
+    public void setLanesEnabled(boolean lanesEnabled) {
+        this.lanesEnabled = lanesEnabled;
+    }
+
+    /** Bu uzunluk ve üzerindeki metni taşıyan düzenlemeler toplu şeride gider */
+    public void setBulkChars(int bulkChars) {
+        this.bulkChars = Math.max(1, bulkChars);
+    }
+
+    public int getBulkChars() {
+        return bulkChars;
+    }
+
+    public void setWireBusy(BooleanSupplier wireBusy) {
+        this.wireBusy = wireBusy;
+    }
+
+    /**
+     * Mesajı kuyruğa koyar. FAIL modunda kuyruk doluysa (veya yazıcı durduysa) false döner.
+     */
+    public boolean enqueue(Message message) {
+        if (!running) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (tryReserve()) {
+            offer(message);
+            return true;
+        }
+
+        Backpressure mode = backpressure;
+        if (mode == Backpressure.FAIL) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (isEdit(message)) {
+            // Yazarken soket beklenmez
+            if (mode != Backpressure.DROP_TO_SNAPSHOT || !replaceWithSnapshot(message)) {
+                offerOverCapacity(message);
+            }
+            return true;
+        }
+
+        // BLOCK (düzenleme dışı mesajlar)
+        while (!tryReserve()) {
+            if (!running) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        offer(message);
+        return true;
+    }
+
+    /**
+     * Beklemeden kuyruğa koyar; doluysa kapasite aşılır. Kuyruğa zaten kabul edilmiş
+     * mesajlar (AckWindow'un kilidi altında saldıkları) için; sadece yazıcı durduysa false döner.
+     */
+    public boolean enqueueWithoutWaiting(Message message) {
+        if (!running) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (tryReserve()) {
+            offer(message);
+        } else {
+            offerOverCapacity(message);
+        }
+        return true;
+    }
+
+    private void offerOverCapacity(Message message) {
+        int current = depth.incrementAndGet();
+        maxDepth.accumulateAndGet(current, Math::max);
+        overflowed.incrementAndGet();
+        if (!overflowing) {
+            overflowing = true;
+            LOGGER.warning("Send queue full - " + message.getType() + " queued over capacity (" + current + "/"
+                    + capacity + ")");
+        }
+        offer(message);
+    }
+
+    private boolean tryReserve() {
+        while (true) {
+            int current = depth.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (depth.compareAndSet(current, current + 1)) {
+                maxDepth.accumulateAndGet(current + 1, Math::max);
+                if (overflowing) {
+                    overflowing = false;
+                }
+                return true;
+            }
+        }
+    }
+
+    private void offer(Message message) {
+        TrafficLane lane = laneOf(message);
+        Entry entry = new Entry(message, lane, System.nanoTime());
+        if (lane == TrafficLane.BULK) {
+            if (message.getFileId() != null) {
+                bulkByFile.computeIfAbsent(message.getFileId(), id -> new AtomicInteger()).incrementAndGet();
+            }
+            bulk.offer(entry);
+        } else {
+            interactive.offer(entry);
+        }
+        enqueued.incrementAndGet();
+        LockSupport.unpark(writerThread);
+    }
+
+    // Toplu şeritte bekleyeni olan dokümanın düzenlemesi onun arkasına girer
+    private TrafficLane laneOf(Message message) {
+        if (!lanesEnabled) {
+            return TrafficLane.INTERACTIVE;
+        }
+        TrafficLane lane = TrafficLane.outboundOf(message, bulkChars);
+        if (lane == TrafficLane.INTERACTIVE && message.getFileId() != null) {
+            AtomicInteger pending = bulkByFile.get(message.getFileId());
+            if (pending != null && pending.get() > 0) {
+                return TrafficLane.BULK;
+            }
+        }
+        return lane;
+    }
+
+    private void releaseBulk(Entry entry) {
+        String fileId = entry.message.getFileId();
+        if (entry.lane == TrafficLane.BULK && fileId != null) {
+            AtomicInteger pending = bulkByFile.get(fileId);
+            if (pending != null) {
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Aynı dokümanın kuyruktaki düzenlemelerini (ve eski snapshot'ını) atar,
+     * yerine güncel içeriği koyar. Snapshot alınamazsa false döner.
+     */
+    private boolean replaceWithSnapshot(Message edit) {
+        BiFunction<String, String, Message> provider = snapshotProvider;
+        Message snapshot = provider != null ? provider.apply(edit.getUserId(), edit.getFileId()) : null;
+        if (snapshot == null) {
+            return false;
+        }
+
+        String fileId = edit.getFileId();
+        int removed = 0;
+        for (Queue<Entry> queue : List.of(interactive, bulk)) {
+            for (Entry entry : queue) {
+                Message queued = entry.message;
+                // Yazıcı aynı anda poll etmiş olabilir; sadece gerçekten çıkarılanlar sayılır
+                if (fileId != null && fileId.equals(queued.getFileId())
+                        && (isEdit(queued) || queued.getType() == Message.MessageType.FILE_UPDATE)
+                        && queue.remove(entry)) {
+                    releaseBulk(entry);
+                    removed++;
+                }
+            }
+        }
+        depth.addAndGet(-removed);
+        dropped.addAndGet(removed + 1); // +1: tetikleyen düzenleme de snapshot'ın içinde
+
+        // Kuyruk başka mesajlarla doluysa snapshot beklemeden kapasiteyi aşar
+        if (tryReserve()) {
+            offer(snapshot);
+        } else {
+            offerOverCapacity(snapshot);
+        }
+        LOGGER.warning("Send queue full - replaced " + removed + " queued edits for " + fileId + " with a snapshot");
+        return true;
+    }
+
+    private static boolean isEdit(Message message) {
+        Message.MessageType type = message.getType();
+        return type == Message.MessageType.TEXT_INSERT || type == Message.MessageType.TEXT_DELETE
+                || type == Message.MessageType.TEXT_BATCH;
+    }
+
+    private void drainLoop() {
+        while (running || !interactive.isEmpty() || !bulk.isEmpty()) {
+            Entry entry = interactive.poll();
+            if (entry == null) {
+                if (bulk.isEmpty()) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                // Önceki toplu parça soketten çıkmadan yenisi yazılmaz; arada gelen tuş vuruşu öne geçer
+                if (running && wireBusy.getAsBoolean()) {
+                    LockSupport.parkNanos(this, BULK_PACE_NANOS);
+                    continue;
+                }
+                entry = bulk.poll();
+                if (entry == null) {
+                    continue;
+                }
+            }
+            depth.decrementAndGet();
+            try {
+                wire.accept(entry.message);
+                written.incrementAndGet();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Writer failed to send " + entry.message.getType(), e);
+            } finally {
+                releaseBulk(entry);
+            }
+            recordLatency(entry.lane, System.nanoTime() - entry.enqueuedNanos);
+        }
+    }
+
+    private void recordLatency(TrafficLane lane, long nanos) {
+        lastLatencyNanos = nanos;
+        totalLatencyNanos.addAndGet(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        laneStats[lane.ordinal()].record(nanos);
+    }
+
+    /**
+     * Kuyruktakileri gönderip yazıcıyı durdurur (en fazla timeoutMillis bekler)
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------------------------------- göstergeler
+
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /** Şeridin kuyruktan sokete yazılana kadar geçen süre göstergeleri */
+    public LatencyStats getLaneStats(TrafficLane lane) {
+        return laneStats[lane.ordinal()];
+    }
+
+    public int getMaxQueueDepth() {
+        return maxDepth.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** Kuyruk doluyken beklemeden, kapasite aşılarak kabul edilen mesajlar */
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    /** Son mesajın kuyruğa girişinden sokete yazılmasına kadar geçen süre */
+    public long getLastLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastLatencyNanos);
+    }
+
+    public long getAverageLatencyMicros() {
+        long count = written.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get() / count);
+    }
+
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get());
+    }
+
+    public String summary() {
+        return "queue " + getQueueDepth() + "/" + capacity + " (max " + getMaxQueueDepth() + "), sent "
+                + written.get() + "/" + enqueued.get() + ", dropped " + getDroppedCount() + ", rejected "
+                + getRejectedCount() + ", overflow " + getOverflowCount() + ", latency avg " + getAverageLatencyMicros() + "us max "
+                + getMaxLatencyMicros() + "us; interactive " + getLaneStats(TrafficLane.INTERACTIVE).summary()
+                + "; bulk " + getLaneStats(TrafficLane.BULK).summary();
+    }
+
+    private static final class Entry {
+        final Message message;
+        final TrafficLane lane;
+        final long enqueuedNanos;
+
+        Entry(Message message, TrafficLane lane, long enqueuedNanos) {
+            this.message = message;
+            this.lane = lane;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.multiuserwordeditor.network;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * - Periyodik WebSocket ping'i ile gidiş-dönüş süresi (RTT) ölçümü
+ * - Son windowSize örnekten p50/p95/p99; p95 eşiği aşarsa bağlantı "yavaş" sayılır
+ * - Yanıtsız ping timeoutMillis'i aşarsa bağlantı kopmuş kabul edilir (onLost),
+ *   onClose'u beklemeden yeniden bağlanma başlar
+ * - Aynı anda tek ping yoldadır; pong gelmeden yenisi gönderilmez
+ */
+public class PingMonitor {
+    private static final Logger LOGGER = Logger.getLogger(PingMonitor.class.getName());
+
+    public static final long DEFAULT_INTERVAL_MS = 5000;
+    public static final long DEFAULT_TIMEOUT_MS = 15000;
+    public static final long DEFAULT_DEGRADED_MS = 500;
+    public static final int DEFAULT_WINDOW_SIZE = 128;
+
+    private final Runnable pingSender;
+    private final Runnable onLost;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final long degradedMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // Kayan pencere - "this" kilidi altında
+    private final long[] samples;
+    private int sampleCount;
+    private int nextSample;
+    private long totalSamples;
+
+    private volatile long pingSentNanos; // 0 = yolda ping yok
+    private volatile long lastRttNanos = -1;
+    private volatile boolean degraded;
+    private ScheduledFuture<?> task;
+    private volatile Consumer<PingMonitor> listener;
+
+    public PingMonitor(Runnable pingSender, Runnable onLost, long intervalMillis, long timeoutMillis,
+            long degradedMillis, int windowSize) {
+        this.pingSender = pingSender;
+        this.onLost = onLost;
+        this.intervalMillis = Math.max(100, intervalMillis);
+        this.timeoutMillis = Math.max(this.intervalMillis, timeoutMillis);
+        this.degradedMillis = degradedMillis;
+        this.samples = new long[Math.max(1, windowSize)];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mtp-ping");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Her ölçümde ve durum değişiminde çağrılır (ping thread'i / socket thread'i) */
+    public void setListener(Consumer<PingMonitor> listener) {
+        this.listener = listener;
+    }
+
+    /** Bağlantı açılınca */
+    public synchronized void start() {
+        stop();
+        pingSentNanos = 0;
+        task = scheduler.scheduleWithFixedDelay(this::tick, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Bağlantı kapanınca; ölçüm geçmişi korunur */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+        pingSentNanos = 0;
+    }
+
+    public void shutdown() {
+        stop();
+        scheduler.shutdownNow();
+    }
+
+    private void tick() {
+        long sent = pingSentNanos;
+        if (sent != 0) {
+            long waitingMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent);
+            if (waitingMillis >= timeoutMillis) {
+                LOGGER.warning("No pong for " + waitingMillis + "ms - treating connection as lost");
+                stop();
+                onLost.run();
+                return;
+            }
+            // Yanıt gecikiyorsa ölçüm gelmeden de yavaş say
+            if (waitingMillis >= degradedMillis) {
+                updateDegraded(true);
+            }
+            return;
+        }
+
+        try {
+            pingSentNanos = System.nanoTime();
+            pingSender.run();
+        } catch (Exception e) {
+            pingSentNanos = 0;
+            LOGGER.log(Level.FINE, "Ping could not be sent", e);
+        }
+    }
+
+    /** Socket thread'i: pong geldi */
+    public void onPong() {
+        long sent = pingSentNanos;
+        if (sent == 0) {
+            return; // istenmemiş pong
+        }
+        pingSentNanos = 0;
+        long rtt = System.nanoTime() - sent;
+        lastRttNanos = rtt;
+        synchronized (this) {
+            samples[nextSample] = rtt;
+            nextSample = (nextSample + 1) % samples.length;
+            sampleCount = Math.min(sampleCount + 1, samples.length);
+            totalSamples++;
+        }
+        if (!updateDegraded(getPercentileMillis(95) >= degradedMillis)) {
+            notifyListener();
+        }
+    }
+
+    // Durum değiştiyse bildirir ve true döner
+    private boolean updateDegraded(boolean nowDegraded) {
+        if (degraded == nowDegraded) {
+            return false;
+        }
+        degraded = nowDegraded;
+        LOGGER.info("Connection " + (nowDegraded ? "degraded" : "healthy") + " - " + summary());
+        notifyListener();
+        return true;
+    }
+
+    private void notifyListener() {
+        Consumer<PingMonitor> current = listener;
+        if (current != null) {
+            try {
+                current.accept(this);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Ping listener failed", e);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- göstergeler
+
+    /** Son ölçülen RTT, henüz ölçüm yoksa -1 */
+    public long getLastRttMillis() {
+        long rtt = lastRttNanos;
+        return rtt < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(rtt);
+    }
+
+    /**
+     * Kayan penceredeki RTT yüzdeliği (nearest-rank), ölçüm yoksa -1
+     */
+    public long getPercentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (sampleCount == 0) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))]);
+    }
+
+    public long getP50Millis() {
+        return getPercentileMillis(50);
+    }
+
+    public long getP95Millis() {
+        return getPercentileMillis(95);
+    }
+
+    public long getP99Millis() {
+        return getPercentileMillis(99);
+    }
+
+    public synchronized long getSampleCount() {
+        return totalSamples;
+    }
+
+    /** p95 eşiği aştıysa veya yoldaki ping eşikten uzun süredir yanıtsızsa */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public long getDegradedThresholdMillis() {
+        return degradedMillis;
+    }
+
+    public String summary() {
+        return "rtt " + getLastRttMillis() + "ms (p50 " + getP50Millis() + ", p95 " + getP95Millis() + ", p99 "
+                + getP99Millis() + ", " + getSampleCount() + " samples)" + (degraded ? " DEGRADED" : "");
+    }
+}
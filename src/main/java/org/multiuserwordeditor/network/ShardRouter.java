@@ -0,0 +1,506 @@
+package org.multiuserwordeditor.network;
+
+import org.multiuserwordeditor.model.Message;
+import org.multiuserwordeditor.model.Payload;
+import org.multiuserwordeditor.util.ConsistentHashRing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * - Dokümanları birden fazla MTP sunucusuna (shard) dağıtan istemci tarafı yönlendirici
+ * - Sunucu haritası mtp.shards ile verilir (host:port,host:port,...); her fileId
+ *   tutarlı karma halkasıyla bir shard'a eşlenir
+ * - Kullanıcının giriş penceresinde bağlandığı sunucu "ev" shard'ıdır ve bu
+ *   nesnenin kendi bağlantısıdır; diğer shard'lara ilk ihtiyaç duyulduğunda
+ *   ayrı bir NetworkManager ile bağlanılır ve aynı kullanıcıyla giriş yapılır
+ * - Dosya listesi tüm shard'lardan istenir ve tek FILE_LIST_RESP olarak birleştirilir;
+ *   listede görülen fileId'ler hangi shard'dan geldiyse oraya yönlendirilir
+ *   (sunucu fileId'yi kendisi atadığı için halka sadece bilinmeyen id'ler ve
+ *   yeni doküman yeri için kullanılır)
+ * - Arayüz NetworkManager ile aynı şekilde kullanır; mtp.shards verilmemişse
+ *   fromSystemProperties() düz bir NetworkManager döner
+ */
+public class ShardRouter extends NetworkManager {
+    private static final Logger LOGGER = Logger.getLogger(ShardRouter.class.getName());
+
+    public static final String SHARDS_PROPERTY = "mtp.shards";
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+    // Oturum düzeyindeki yanıtlar sadece ev shard'ından arayüze gider
+    private static final List<Message.MessageType> HOME_ONLY_TYPES = List.of(
+            Message.MessageType.CONNECT_ACK, Message.MessageType.LOGIN_ACK, Message.MessageType.REGISTER_ACK);
+
+    private final ConsistentHashRing<String> ring;
+    private volatile String homeEndpoint;
+
+    // endpoint -> ev dışındaki shard bağlantısı
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    // Listeden/yanıtlardan öğrenilen fileId -> endpoint
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+    // endpoint -> shard'ın son bildirdiği dosya listesi (id:ad:kullanıcıSayısı)
+    private final Map<String, List<String>> fileLists = new ConcurrentHashMap<>();
+
+    // Yeni açılan shard'lara da uygulanan arayüz ayarları
+    private final Map<Message.MessageType, Consumer<Message>> handlers = new ConcurrentHashMap<>();
+    private volatile Consumer<Message> fileListHandler;
+    private volatile Consumer<String> errorHandler;
+    private volatile Function<String, String> snapshotProvider;
+    private volatile String username;
+    private volatile String password;
+
+    public ShardRouter(List<String> endpoints, int virtualNodes) {
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        for (String endpoint : endpoints) {
+            ring.add(normalize(endpoint));
+        }
+        LOGGER.info("Shard router initialized with " + ring.size() + " endpoints: " + ring.getNodes());
+    }
+
+    /**
+     * mtp.shards verilmişse yönlendirici, verilmemişse tek sunuculu NetworkManager
+     */
+    public static NetworkManager fromSystemProperties() {
+        String shardMap = System.getProperty(SHARDS_PROPERTY, "").trim();
+        if (shardMap.isEmpty()) {
+            return new NetworkManager();
+        }
+        List<String> endpoints = new ArrayList<>();
+        for (String endpoint : shardMap.split(",")) {
+            if (!endpoint.trim().isEmpty()) {
+                endpoints.add(endpoint.trim());
+            }
+        }
+        return new ShardRouter(endpoints,
+                Integer.getInteger("mtp.shards.virtualNodes", DEFAULT_VIRTUAL_NODES));
+    }
+
+    // ---------------------------------------------------------------- bağlantı
+
+    @Override
+    public CompletableFuture<Void> connectAsync(String host, int port) {
+        homeEndpoint = normalize(host + ":" + port);
+        if (!ring.getNodes().contains(homeEndpoint)) {
+            LOGGER.warning("Home endpoint " + homeEndpoint + " is not in " + SHARDS_PROPERTY + " - adding it to the ring");
+            ring.add(homeEndpoint);
+        }
+        return super.connectAsync(host, port);
+    }
+
+    @Override
+    public void login(String username, String password) {
+        // Diğer shard'lar açılırken aynı kimlikle giriş yapılır
+        this.username = username;
+        this.password = password;
+        super.login(username, password);
+    }
+
+    @Override
+    public void disconnect() {
+        for (Shard shard : shards.values()) {
+            shard.manager.disconnect();
+        }
+        shards.clear();
+        super.disconnect();
+    }
+
+    /**
+     * fileId'nin shard'ı; ev shard'ı için null (bu nesnenin kendi bağlantısı)
+     */
+    private Shard shardFor(String fileId) {
+        String endpoint = owners.get(fileId);
+        return shard(endpoint != null ? endpoint : ring.get(fileId));
+    }
+
+    private Shard shard(String endpoint) {
+        if (endpoint == null || endpoint.equals(homeEndpoint)) {
+            return null;
+        }
+        return shards.computeIfAbsent(endpoint, this::openShard);
+    }
+
+    private Shard openShard(String endpoint) {
+        LOGGER.info("Opening shard connection to " + endpoint);
+        NetworkManager manager = new NetworkManager();
+        handlers.forEach((type, handler) -> registerOn(manager, endpoint, type, handler));
+        registerFileListHandler(manager, endpoint);
+        if (errorHandler != null) {
+            manager.setErrorHandler(errorHandler);
+        }
+        if (snapshotProvider != null) {
+            manager.setSnapshotProvider(snapshotProvider);
+        }
+
+        CompletableFuture<Message> ready;
+        if (username == null) {
+            ready = CompletableFuture.failedFuture(new IllegalStateException("Not logged in"));
+        } else {
+            int colon = endpoint.lastIndexOf(':');
+            ready = manager.connectAndLogin(endpoint.substring(0, colon),
+                    Integer.parseInt(endpoint.substring(colon + 1)), username, password).thenApply(ack -> {
+                        if (!"success".equals(ack.getData("status"))) {
+                            throw new IllegalStateException("Login failed on " + endpoint + ": " + ack.getData("message"));
+                        }
+                        return ack;
+                    });
+        }
+
+        Shard shard = new Shard(endpoint, manager, ready);
+        // Async: başarısızlık computeIfAbsent içinden haritayı değiştirmemeli
+        ready.whenCompleteAsync((ack, error) -> {
+            if (error != null) {
+                LOGGER.log(Level.WARNING, "Shard " + endpoint + " unavailable", error);
+                shards.remove(endpoint, shard);
+                manager.disconnect();
+                return;
+            }
+            LOGGER.info("Shard " + endpoint + " ready as " + ack.getUserId());
+            CompletableFuture<Message> prefetched = manager.takePrefetchedFileList();
+            if (prefetched != null) {
+                prefetched.thenAccept(list -> recordFileList(endpoint, list));
+            }
+        });
+        return shard;
+    }
+
+    // ---------------------------------------------------------------- doküman işlemleri
+
+    @Override
+    public CompletableFuture<Message> createDocument(String filename) {
+        // Yeni doküman adının karmasına göre bir shard'da oluşturulur
+        String endpoint = filename != null ? ring.get(filename.trim()) : null;
+        Shard shard = shard(endpoint);
+        CompletableFuture<Message> reply = shard == null ? super.createDocument(filename)
+                : shard.call(manager -> manager.createDocument(filename));
+        return reply.thenApply(message -> {
+            learnOwner(message.getFileId(), shard != null ? shard.endpoint : homeEndpoint);
+            return message;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Message> openDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.openDocument(fileId) : shard.call(manager -> manager.openDocument(fileId));
+    }
+
+    @Override
+    public CompletableFuture<Message> deleteDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.deleteDocument(fileId) : shard.call(manager -> manager.deleteDocument(fileId));
+    }
+
+    @Override
+    public CompletableFuture<Message> saveDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.saveDocument(fileId) : shard.call(manager -> manager.saveDocument(fileId));
+    }
+
+    @Override
+    public void insertText(String fileId, int position, String text) {
+        Shard shard = shardFor(fileId);
+        if (shard == null) {
+            super.insertText(fileId, position, text);
+        } else {
+            shard.run(manager -> manager.insertText(fileId, position, text));
+        }
+    }
+
+    @Override
+    public void deleteText(String fileId, int position, int length) {
+        Shard shard = shardFor(fileId);
+        if (shard == null) {
+            super.deleteText(fileId, position, length);
+        } else {
+            shard.run(manager -> manager.deleteText(fileId, position, length));
+        }
+    }
+
+    @Override
+    public boolean canDeleteDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.canDeleteDocument(fileId) : shard.manager.canDeleteDocument(fileId);
+    }
+
+    // OT durumu dokümanın düzenlemelerini gönderen bağlantıda tutulur
+    @Override
+    public OtDocument openOtDocument(String fileId, Message content) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.openOtDocument(fileId, content) : shard.manager.openOtDocument(fileId, content);
+    }
+
+    @Override
+    public OtDocument getOtDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.getOtDocument(fileId) : shard.manager.getOtDocument(fileId);
+    }
+
+    @Override
+    public void closeOtDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        if (shard == null) {
+            super.closeOtDocument(fileId);
+        } else {
+            shard.manager.closeOtDocument(fileId);
+        }
+    }
+
+    // CRDT kopyası da düzenlemeleri gönderen bağlantıda, o bağlantının site kimliğiyle tutulur
+    @Override
+    public CrdtDocument openCrdtDocument(String fileId, Message content, String text) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.openCrdtDocument(fileId, content, text)
+                : shard.manager.openCrdtDocument(fileId, content, text);
+    }
+
+    @Override
+    public CrdtDocument getCrdtDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        return shard == null ? super.getCrdtDocument(fileId) : shard.manager.getCrdtDocument(fileId);
+    }
+
+    @Override
+    public void closeCrdtDocument(String fileId) {
+        Shard shard = shardFor(fileId);
+        if (shard == null) {
+            super.closeCrdtDocument(fileId);
+        } else {
+            shard.manager.closeCrdtDocument(fileId);
+        }
+    }
+
+    // ---------------------------------------------------------------- dosya listesi
+
+    /**
+     * Tüm shard'lardan liste ister (gerekirse bağlantıları açar); erişilemeyen
+     * shard'lar atlanır
+     *
+     * @return birleştirilmiş FILE_LIST_RESP
+     */
+    @Override
+    public CompletableFuture<Message> requestFileList() {
+        CompletableFuture<Void> home = super.requestFileList()
+                .thenAccept(list -> recordFileList(homeEndpoint, list));
+        return CompletableFuture.allOf(tolerant(homeEndpoint, home), requestRemoteFileLists())
+                .thenApply(ignored -> mergedFileList());
+    }
+
+    @Override
+    public CompletableFuture<Message> takePrefetchedFileList() {
+        CompletableFuture<Message> home = super.takePrefetchedFileList();
+        if (home == null) {
+            return null;
+        }
+        return home.thenCompose(list -> {
+            recordFileList(homeEndpoint, list);
+            return requestRemoteFileLists();
+        }).thenApply(ignored -> mergedFileList());
+    }
+
+    private CompletableFuture<Void> requestRemoteFileLists() {
+        List<CompletableFuture<Void>> replies = new ArrayList<>();
+        for (String endpoint : ring.getNodes()) {
+            Shard shard = shard(endpoint);
+            if (shard != null) {
+                replies.add(tolerant(endpoint, shard.call(NetworkManager::requestFileList)
+                        .thenAccept(list -> recordFileList(endpoint, list))));
+            }
+        }
+        return CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static CompletableFuture<Void> tolerant(String endpoint, CompletableFuture<Void> reply) {
+        return reply.exceptionally(error -> {
+            LOGGER.warning("File list from " + endpoint + " unavailable: " + error);
+            return null;
+        });
+    }
+
+    private void recordFileList(String endpoint, Message list) {
+        List<String> entries = new ArrayList<>();
+        for (Payload.FileList.Entry entry : list.getFileList().entries()) {
+            entries.add(entry.getFileId() + ":" + entry.getFileName() + ":" + entry.getUserCount());
+            learnOwner(entry.getFileId(), endpoint);
+        }
+        fileLists.put(endpoint, entries);
+    }
+
+    // Ev shard'ı önce, sonra halka sırasıyla
+    private Message mergedFileList() {
+        List<String> merged = new ArrayList<>();
+        List<String> endpoints = new ArrayList<>(ring.getNodes());
+        endpoints.remove(homeEndpoint);
+        endpoints.add(0, homeEndpoint);
+        for (String endpoint : endpoints) {
+            merged.addAll(fileLists.getOrDefault(endpoint, List.of()));
+        }
+        LOGGER.fine(() -> "Merged file list - " + merged.size() + " files from " + fileLists.size() + " shards");
+        return new Message(Message.MessageType.FILE_LIST_RESP, getUserId(), null)
+                .addData("files", String.join("|", merged));
+    }
+
+    private void learnOwner(String fileId, String endpoint) {
+        if (fileId != null && endpoint != null) {
+            owners.put(fileId, endpoint);
+        }
+    }
+
+    // ---------------------------------------------------------------- işleyiciler
+
+    @Override
+    public void registerHandler(Message.MessageType type, Consumer<Message> handler) {
+        if (type == Message.MessageType.FILE_LIST_RESP) {
+            // Shard listeleri kaydedilir, arayüze her zaman birleşik liste gider
+            fileListHandler = handler;
+            registerFileListHandler(this, null);
+            shards.forEach((endpoint, shard) -> registerFileListHandler(shard.manager, endpoint));
+            return;
+        }
+        handlers.put(type, handler);
+        registerOn(this, null, type, handler);
+        if (!HOME_ONLY_TYPES.contains(type)) {
+            shards.forEach((endpoint, shard) -> registerOn(shard.manager, endpoint, type, handler));
+        }
+    }
+
+    // endpoint null = ev shard'ı (bu nesne)
+    private void registerOn(NetworkManager manager, String endpoint, Message.MessageType type,
+            Consumer<Message> handler) {
+        if (endpoint != null && HOME_ONLY_TYPES.contains(type)) {
+            return;
+        }
+        Consumer<Message> routed = handler;
+        if (type == Message.MessageType.FILE_CREATE) {
+            routed = message -> {
+                learnOwner(message.getFileId(), endpoint != null ? endpoint : homeEndpoint);
+                handler.accept(message);
+            };
+        }
+        if (manager == this) {
+            super.registerHandler(type, routed);
+        } else {
+            manager.registerHandler(type, routed);
+        }
+    }
+
+    private void registerFileListHandler(NetworkManager manager, String endpoint) {
+        Consumer<Message> handler = message -> {
+            recordFileList(endpoint != null ? endpoint : homeEndpoint, message);
+            Consumer<Message> current = fileListHandler;
+            if (current != null) {
+                current.accept(mergedFileList());
+            }
+        };
+        if (manager == this) {
+            super.registerHandler(Message.MessageType.FILE_LIST_RESP, handler);
+        } else {
+            manager.registerHandler(Message.MessageType.FILE_LIST_RESP, handler);
+        }
+    }
+
+    @Override
+    public void clearHandlers() {
+        handlers.clear();
+        fileListHandler = null;
+        for (Shard shard : shards.values()) {
+            shard.manager.clearHandlers();
+        }
+        super.clearHandlers();
+    }
+
+    @Override
+    public void setErrorHandler(Consumer<String> handler) {
+        this.errorHandler = handler;
+        for (Shard shard : shards.values()) {
+            shard.manager.setErrorHandler(handler);
+        }
+        super.setErrorHandler(handler);
+    }
+
+    @Override
+    public void setSnapshotProvider(Function<String, String> contentForFileId) {
+        this.snapshotProvider = contentForFileId;
+        for (Shard shard : shards.values()) {
+            shard.manager.setSnapshotProvider(contentForFileId);
+        }
+        super.setSnapshotProvider(contentForFileId);
+    }
+
+    // ---------------------------------------------------------------- göstergeler
+
+    /** fileId'nin yönlendirildiği endpoint */
+    public String getEndpointFor(String fileId) {
+        String endpoint = owners.get(fileId);
+        return endpoint != null ? endpoint : ring.get(fileId);
+    }
+
+    public List<String> getEndpoints() {
+        return ring.getNodes();
+    }
+
+    public int getOpenShardCount() {
+        return shards.size() + (isConnected() ? 1 : 0);
+    }
+
+    private static String normalize(String endpoint) {
+        String trimmed = endpoint.trim();
+        if (trimmed.startsWith("ws://")) {
+            trimmed = trimmed.substring("ws://".length());
+        }
+        if (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Ev dışındaki bir shard bağlantısı. Giriş tamamlanmadan gelen işlemler
+     * sırası korunarak bekletilir.
+     */
+    private static final class Shard {
+        final String endpoint;
+        final NetworkManager manager;
+        // Sıradaki işlemin bağlanacağı zincirin ucu
+        private CompletableFuture<?> tail;
+
+        Shard(String endpoint, NetworkManager manager, CompletableFuture<Message> ready) {
+            this.endpoint = endpoint;
+            this.manager = manager;
+            this.tail = ready;
+        }
+
+        // Zincir sadece giriş başarısız olursa kırılır; tek bir işlemin hatası sonrakileri durdurmaz
+        synchronized void run(Consumer<NetworkManager> operation) {
+            tail = tail.thenRun(() -> {
+                try {
+                    operation.accept(manager);
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Operation for shard " + endpoint + " failed", e);
+                }
+            });
+            tail.exceptionally(error -> {
+                LOGGER.warning("Operation for shard " + endpoint + " dropped: " + error);
+                return null;
+            });
+        }
+
+        synchronized <T> CompletableFuture<T> call(Function<NetworkManager, CompletableFuture<T>> operation) {
+            CompletableFuture<CompletableFuture<T>> issued = tail.thenApply(ignored -> {
+                try {
+                    return operation.apply(manager);
+                } catch (Exception e) {
+                    return CompletableFuture.<T>failedFuture(e);
+                }
+            });
+            tail = issued;
+            return issued.thenCompose(reply -> reply);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.multiuserwordeditor.network;
+
+import org.multiuserwordeditor.model.Message;
+
+/**
+ * - Giden ve gelen trafiğin öncelik şeritleri
+ * - INTERACTIVE: tuş vuruşu düzenlemeleri ve oturum kontrolü; her zaman önce işlenir
+ * - BULK: katalog/içerik aktarımı, kaydetme ve büyük düzenlemeler; sadece
+ *   etkileşimli şerit boşken, parçalar halinde araya girerek işlenir
+ */
+public enum TrafficLane {
+    INTERACTIVE, BULK;
+
+    /**
+     * Giden mesajın şeridi; metni bulkChars ve üzeri olan düzenlemeler de BULK sayılır
+     */
+    public static TrafficLane outboundOf(Message message, int bulkChars) {
+        Message.MessageType type = message.getType();
+        if (type == null) {
+            return BULK;
+        }
+        switch (type) {
+            case TEXT_INSERT:
+            case TEXT_DELETE:
+            case TEXT_BATCH:
+            case FILE_UPDATE:
+                return textLength(message) >= bulkChars ? BULK : INTERACTIVE;
+            case CONNECT:
+            case LOGIN:
+            case REGISTER:
+                return INTERACTIVE;
+            default:
+                // FILE_LIST, FILE_OPEN, FILE_CREATE, FILE_DELETE, SAVE, DISCONNECT ...
+                return BULK;
+        }
+    }
+
+    private static int textLength(Message message) {
+        int length = 0;
+        for (String key : new String[] { "text", "content", "ops" }) {
+            String value = message.getData(key);
+            if (value != null) {
+                length += value.length();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,183 @@
+package org.multiuserwordeditor.network;
+
+import javax.net.SocketFactory;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * - Ölçüm modu: sıkıştırma öncesi MTP payload byte'ları ile soketten gerçekten
+ *   geçen byte'ları (WebSocket framing + permessage-deflate sonrası) karşılaştırır
+ * - Soket sayaçları socketFactory() ile bağlantıya takılır
+ */
+public class WireStats {
+    private final AtomicLong payloadBytesSent = new AtomicLong();
+    private final AtomicLong payloadBytesReceived = new AtomicLong();
+    private final AtomicLong wireBytesSent = new AtomicLong();
+    private final AtomicLong wireBytesReceived = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    public void recordSent(String text) {
+        recordSent(text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    public void recordSent(int payloadBytes) {
+        payloadBytesSent.addAndGet(payloadBytes);
+        messagesSent.incrementAndGet();
+    }
+
+    public void recordReceived(String text) {
+        recordReceived(text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    public void recordReceived(int payloadBytes) {
+        payloadBytesReceived.addAndGet(payloadBytes);
+        messagesReceived.incrementAndGet();
+    }
+
+    public long getPayloadBytesSent() {
+        return payloadBytesSent.get();
+    }
+
+    public long getPayloadBytesReceived() {
+        return payloadBytesReceived.get();
+    }
+
+    public long getWireBytesSent() {
+        return wireBytesSent.get();
+    }
+
+    public long getWireBytesReceived() {
+        return wireBytesReceived.get();
+    }
+
+    public void reset() {
+        payloadBytesSent.set(0);
+        payloadBytesReceived.set(0);
+        wireBytesSent.set(0);
+        wireBytesReceived.set(0);
+        messagesSent.set(0);
+        messagesReceived.set(0);
+    }
+
+    /**
+     * Örn: "sent 12 msgs 1480B -> 612B on wire (41%), received ..."
+     * Wire sayıları HTTP upgrade el sıkışmasını da içerir.
+     */
+    public String summary() {
+        return "sent " + messagesSent.get() + " msgs " + describe(payloadBytesSent.get(), wireBytesSent.get())
+                + ", received " + messagesReceived.get() + " msgs "
+                + describe(payloadBytesReceived.get(), wireBytesReceived.get());
+    }
+
+    private static String describe(long payload, long wire) {
+        long percent = payload > 0 ? Math.round(wire * 100.0 / payload) : 0;
+        return payload + "B -> " + wire + "B on wire (" + percent + "%)";
+    }
+
+    /**
+     * Oluşturduğu soketlerin okuma/yazma byte'larını bu sayaçlara yazan fabrika
+     */
+    public SocketFactory socketFactory() {
+        return new CountingSocketFactory();
+    }
+
+    private final class CountingSocketFactory extends SocketFactory {
+        @Override
+        public Socket createSocket() {
+            return new CountingSocket();
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return connected(new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            Socket socket = new CountingSocket();
+            socket.bind(new InetSocketAddress(localHost, localPort));
+            socket.connect(new InetSocketAddress(host, port));
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return connected(new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            Socket socket = new CountingSocket();
+            socket.bind(new InetSocketAddress(localAddress, localPort));
+            socket.connect(new InetSocketAddress(address, port));
+            return socket;
+        }
+
+        private Socket connected(InetSocketAddress address) throws IOException {
+            Socket socket = new CountingSocket();
+            socket.connect(address);
+            return socket;
+        }
+    }
+
+    private final class CountingSocket extends Socket {
+        private InputStream in;
+        private OutputStream out;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) {
+                            wireBytesReceived.incrementAndGet();
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = super.read(buffer, offset, length);
+                        if (read > 0) {
+                            wireBytesReceived.addAndGet(read);
+                        }
+                        return read;
+                    }
+                };
+            }
+            return in;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new FilterOutputStream(super.getOutputStream()) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        wireBytesSent.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] buffer, int offset, int length) throws IOException {
+                        out.write(buffer, offset, length);
+                        wireBytesSent.addAndGet(length);
+                    }
+                };
+            }
+            return out;
+        }
+    }
+}
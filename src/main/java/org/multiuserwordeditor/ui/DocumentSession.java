@@ -0,0 +1,106 @@
+package org.multiuserwordeditor.ui;
+
+import org.multiuserwordeditor.model.Message;
+import org.multiuserwordeditor.util.SpscRingBuffer;
+
+import javax.swing.text.BadLocationException;
+
+/**
+ * - Açık bir dokümanın istemci tarafı durumu (fileId başına bir tane)
+ * - Kendi metin kopyası (SessionDocument), kendi sıralı gelen düzenleme kuyruğu
+ *   ve içerik aktarımı durumu vardır; aynı bağlantı üzerinden birden fazla
+ *   doküman birbirine karışmadan canlı tutulur
+ * - Editör sadece aktif oturumun dokümanını gösterir; diğerleri arka planda güncellenir
+ */
+class DocumentSession {
+    private final String fileId;
+    private String fileName;
+    private final SessionDocument document;
+
+    // WebSocket thread'i yazar, EDT kare başına boşaltır
+    private final SpscRingBuffer<Message> inbound;
+
+    // EDT only
+    private int expectedContentChunk = -1; // -1 = aktarım yok
+    private boolean loaded;
+    private int caretPosition;
+
+    DocumentSession(String fileId, String fileName, SessionDocument document, int inboundCapacity) {
+        this.fileId = fileId;
+        this.fileName = fileName;
+        this.document = document;
+        this.inbound = new SpscRingBuffer<>(inboundCapacity);
+    }
+
+    String getFileId() {
+        return fileId;
+    }
+
+    String getFileName() {
+        return fileName != null ? fileName : fileId;
+    }
+
+    void setFileName(String fileName) {
+        if (fileName != null) {
+            this.fileName = fileName;
+        }
+    }
+
+    SessionDocument getDocument() {
+        return document;
+    }
+
+    SpscRingBuffer<Message> getInbound() {
+        return inbound;
+    }
+
+    /**
+     * Dokümanın güncel metni; render() ile okuma kilidi altında okunur, bu yüzden
+     * EDT dışından da çağrılabilir. Okunamazsa null döner (boş metin snapshot
+     * olarak gönderilirse sunucudaki doküman silinirdi)
+     */
+    String getText() {
+        String[] text = new String[1];
+        document.render(() -> {
+            try {
+                text[0] = document.getText(0, document.getLength());
+            } catch (BadLocationException e) {
+                text[0] = null;
+            }
+        });
+        return text[0];
+    }
+
+    /**
+     * Metni tamamen değiştirir (tek remove + insert)
+     */
+    void replaceText(String text) throws BadLocationException {
+        document.remove(0, document.getLength());
+        document.insertString(0, text, null);
+    }
+
+    int getExpectedContentChunk() {
+        return expectedContentChunk;
+    }
+
+    void setExpectedContentChunk(int expectedContentChunk) {
+        this.expectedContentChunk = expectedContentChunk;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
+    /** Oturum arka plana alınırken editördeki imleç konumu */
+    int getCaretPosition() {
+        return Math.min(caretPosition, document.getLength());
+    }
+
+    void setCaretPosition(int caretPosition) {
+        this.caretPosition = caretPosition;
+    }
+}
@@ -91,30 +91,10 @@ public class LoginWindow extends JFrame {
     }
 
     private void setupNetworkManager() {
-        networkManager.setMessageHandler(message -> {
-            if (message == null || !message.isValid())
-                return;
-
-            System.out.println("Login: Mesaj alındı -> " + message.getType());
-
-            switch (message.getType()) {
-                case CONNECT_ACK:
-                    handleConnectAck(message);
-                    break;
-
-                case LOGIN_ACK:
-                    handleLoginAck(message);
-                    break;
-
-                case REGISTER_ACK:
-                    handleRegisterAck(message);
-                    break;
-
-                case ERROR:
-                    handleError(message.getData("message"));
-                    break;
-            }
-        });
+        networkManager.registerHandler(Message.MessageType.CONNECT_ACK, this::handleConnectAck);
+        networkManager.registerHandler(Message.MessageType.LOGIN_ACK, this::handleLoginAck);
+        networkManager.registerHandler(Message.MessageType.REGISTER_ACK, this::handleRegisterAck);
+        networkManager.registerHandler(Message.MessageType.ERROR, message -> handleError(message.getData("message")));
 
         networkManager.setErrorHandler(error -> {
             showError(error);
@@ -122,26 +102,22 @@ public class LoginWindow extends JFrame {
         });
     }
 
-    private boolean connectToServer() {
+    /**
+     * Sunucu adresini okur; geçersizse hata gösterip null döner
+     */
+    private String[] readServerAddress() {
+        String host = hostField.getText().trim();
+        if (host.isEmpty()) {
+            showError("Sunucu adresi boş olamaz!");
+            return null;
+        }
         try {
-            String host = hostField.getText().trim();
-            int port = Integer.parseInt(portField.getText().trim());
-
-            if (host.isEmpty()) {
-                showError("Sunucu adresi boş olamaz!");
-                return false;
-            }
-
-            networkManager.connect(host, port);
-            statusLabel.setText("Sunucuya bağlanılıyor...");
-            return true;
+            Integer.parseInt(portField.getText().trim());
         } catch (NumberFormatException e) {
             showError("Geçersiz port numarası!");
-            return false;
-        } catch (Exception e) {
-            showError("Bağlantı hatası: " + e.getMessage());
-            return false;
+            return null;
         }
+        return new String[] { host, portField.getText().trim() };
     }
 
     private void handleLogin() {
@@ -154,13 +130,27 @@ public class LoginWindow extends JFrame {
                 return;
             }
 
-            if (!networkManager.isConnected() && !connectToServer()) {
+            setButtonsEnabled(false);
+            if (networkManager.isConnected()) {
+                networkManager.login(username, password);
+                statusLabel.setText("Giriş yapılıyor...");
                 return;
             }
 
-            networkManager.login(username, password);
-            statusLabel.setText("Giriş yapılıyor...");
-            setButtonsEnabled(false);
+            String[] address = readServerAddress();
+            if (address == null) {
+                setButtonsEnabled(true);
+                return;
+            }
+
+            // Bağlantı açılır açılmaz LOGIN, LOGIN_ACK gelir gelmez FILE_LIST gönderilir;
+            // sonuç LOGIN_ACK işleyicisine gelir, EDT hiç beklemez
+            statusLabel.setText("Sunucuya bağlanılıyor...");
+            networkManager.connectAndLogin(address[0], Integer.parseInt(address[1]), username, password)
+                    .exceptionally(error -> {
+                        setButtonsEnabled(true);
+                        return null;
+                    });
         } catch (Exception e) {
             showError("Giriş hatası: " + e.getMessage());
             setButtonsEnabled(true);
@@ -177,13 +167,26 @@ public class LoginWindow extends JFrame {
                 return;
             }
 
-            if (!networkManager.isConnected() && !connectToServer()) {
+            setButtonsEnabled(false);
+            if (networkManager.isConnected()) {
+                networkManager.register(username, password);
+                statusLabel.setText("Kayıt yapılıyor...");
                 return;
             }
 
-            networkManager.register(username, password);
-            statusLabel.setText("Kayıt yapılıyor...");
-            setButtonsEnabled(false);
+            String[] address = readServerAddress();
+            if (address == null) {
+                setButtonsEnabled(true);
+                return;
+            }
+
+            statusLabel.setText("Sunucuya bağlanılıyor...");
+            networkManager.connectAsync(address[0], Integer.parseInt(address[1]))
+                    .thenRun(() -> networkManager.register(username, password))
+                    .exceptionally(error -> {
+                        setButtonsEnabled(true);
+                        return null;
+                    });
         } catch (Exception e) {
             showError("Kayıt hatası: " + e.getMessage());
             setButtonsEnabled(true);
@@ -2,8 +2,12 @@ package org.multiuserwordeditor.ui;
 
 import org.multiuserwordeditor.model.Document;
 import org.multiuserwordeditor.model.Message;
+import org.multiuserwordeditor.model.Payload;
 import org.multiuserwordeditor.network.NetworkManager;
+import org.multiuserwordeditor.network.CrdtDocument;
+import org.multiuserwordeditor.network.OtDocument;
 import org.multiuserwordeditor.util.ExceptionHandler;
+import org.multiuserwordeditor.util.SpscRingBuffer;
 
 import javax.swing.*;
 import javax.swing.border.*;
@@ -14,6 +18,12 @@ import java.awt.event.*;
 import java.awt.datatransfer.*;
 import java.awt.dnd.*;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class MainWindow extends JFrame {
@@ -32,17 +42,34 @@ public class MainWindow extends JFrame {
     private JToggleButton italicButton;
     private JToggleButton underlineButton;
     private JLabel statusLabel;
+    private JLabel rttLabel;
     private JTextField searchField;
     private Color currentTextColor;
     private String currentTheme = "light";
     private boolean isUpdatingFromServer = false;
     private final Object textChangeLock = new Object();
-    private volatile boolean isProcessingTextChange = false;
 
     private static final int MAX_FILENAME_LENGTH = 100;
+    private static final int FILE_LIST_CHUNK_SIZE = 200;
     private static final String INVALID_FILENAME_CHARS = "<>:\"|?*/\\\\";
 
-    private String lastContent = "";
+    // Açık dokümanlar: fileId -> oturum. Gelen mesajlar fileId'ye göre yönlendirilir,
+    // editör sadece aktif oturumun dokümanını gösterir
+    private final Map<String, DocumentSession> sessions = new ConcurrentHashMap<>();
+    private DocumentSession activeSession; // EDT only
+    private DocumentListener editorDocumentListener;
+    private final Segment localEditSegment = new Segment(); // EDT only
+
+    // Uzak düzenlemeler: WebSocket thread'i oturumun halkasına yazar, EDT kare başına bir kez boşaltır
+    private static final int REMOTE_EDIT_FRAME_MS = 16;
+    private static final int MAX_REMOTE_EDITS_PER_FRAME = 1024;
+    private static final int INBOUND_CAPACITY = Integer.getInteger("mtp.inbound.capacity", 4096);
+    private final java.util.concurrent.atomic.AtomicBoolean remoteEditFrameScheduled =
+            new java.util.concurrent.atomic.AtomicBoolean();
+    private final javax.swing.Timer remoteEditTimer = new javax.swing.Timer(REMOTE_EDIT_FRAME_MS,
+            e -> applyRemoteEdits());
+    private final List<Message> remoteEditBatch = new ArrayList<>(); // EDT only
+    private int fileListGeneration; // EDT only
 
     public MainWindow(NetworkManager networkManager, String userId) {
         super("Çok Kullanıcılı Metin Editörü");
@@ -51,12 +78,12 @@ public class MainWindow extends JFrame {
         initialize();
         setupNetworkManager();
         ExceptionHandler.setMainFrame(this);
-        requestDocumentList();
         setupDragAndDrop();
     }
 
     private void initialize() {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        remoteEditTimer.setRepeats(false);
         setSize(1200, 800);
         setLocationRelativeTo(null);
 
@@ -84,15 +111,113 @@ public class MainWindow extends JFrame {
         statusLabel = new JLabel("Hazır");
         statusLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
 
+        // Bağlantı sağlığı: son RTT ve p95, yavaşsa uyarı rengi
+        rttLabel = new JLabel("RTT -");
+        rttLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+
+        JPanel statusBar = new JPanel(new BorderLayout());
+        statusBar.setOpaque(false);
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+        statusBar.add(rttLabel, BorderLayout.EAST);
+
         Container contentPane = getContentPane();
         contentPane.add(mainSplitPane, BorderLayout.CENTER);
-        contentPane.add(statusLabel, BorderLayout.SOUTH);
+        contentPane.add(statusBar, BorderLayout.SOUTH);
 
         applyTheme(currentTheme);
     }
 
     private void setupNetworkManager() {
-        networkManager.setMessageHandler(message -> {
+        // Login ekranının işleyicilerini bırak; sadece burada dinlenen tipler çözülür
+        networkManager.clearHandlers();
+
+        networkManager.registerHandler(Message.MessageType.FILE_LIST_RESP, guarded(this::handleFileListResponse));
+        networkManager.registerHandler(Message.MessageType.FILE_CONTENT, guarded(this::handleFileContent));
+        networkManager.registerHandler(Message.MessageType.FILE_CREATE, guarded(this::handleFileCreated));
+        networkManager.registerHandler(Message.MessageType.TEXT_UPDATE, guarded(this::handleFileUpdated));
+        networkManager.registerHandler(Message.MessageType.TEXT_ACK, guarded(this::handleEditAck));
+        networkManager.registerHandler(Message.MessageType.FILE_DELETE_ACK, guarded(this::handleFileDeleteAck));
+        networkManager.registerHandler(Message.MessageType.ERROR, guarded(message -> {
+            String errorMsg = message.getData("message");
+            // Karakter kodlama düzeltmesi
+            if (errorMsg != null) {
+                errorMsg = new String(errorMsg.getBytes("ISO-8859-1"), "UTF-8");
+            }
+            handleError(errorMsg);
+        }));
+
+        // DROP_TO_SNAPSHOT: gönderim kuyruğu taşarsa açık dokümanın tamamı gönderilir
+        networkManager.setSnapshotProvider(fileId -> {
+            DocumentSession session = sessions.get(fileId);
+            return session != null && session.isLoaded() ? session.getText() : null;
+        });
+
+        // Bağlantı koparsa oturum arka planda yeniden kurulur; sadece durum satırı güncellenir
+        networkManager.setConnectionListener(event -> SwingUtilities.invokeLater(() -> {
+            switch (event) {
+                case LOST:
+                    statusLabel.setText("⚠️ Bağlantı koptu, düzenlemeler bekletiliyor...");
+                    break;
+                case RECONNECTING:
+                    statusLabel.setText("🔄 Yeniden bağlanılıyor...");
+                    break;
+                case RESUMED:
+                    statusLabel.setText("✅ Bağlantı yeniden kuruldu");
+                    break;
+                case RESUME_FAILED:
+                    statusLabel.setText("❌ Oturum devam ettirilemedi");
+                    showError("Sunucu oturumu devam ettiremedi. Kaydedilmemiş son düzenlemeler gönderilemedi; "
+                            + "lütfen uygulamayı yeniden başlatıp tekrar giriş yapın.");
+                    break;
+                case GAVE_UP:
+                    statusLabel.setText(networkManager.getOfflineJournal() != null
+                            ? "❌ Bağlantı yeniden kurulamadı - düzenlemeler çevrimdışı kaydediliyor"
+                            : "❌ Bağlantı yeniden kurulamadı");
+                    break;
+                default:
+                    break;
+            }
+        }));
+
+        networkManager.setHealthListener(health -> SwingUtilities.invokeLater(() -> updateRttLabel(health)));
+
+        // Giriş sırasında istenen liste varsa onu kullan, yoksa şimdi iste
+        java.util.concurrent.CompletableFuture<Message> prefetched = networkManager.takePrefetchedFileList();
+        if (prefetched == null) {
+            requestDocumentList();
+            return;
+        }
+        statusLabel.setText("📋 Doküman listesi yükleniyor...");
+        prefetched.whenComplete((message, error) -> {
+            if (error == null) {
+                handleFileListResponse(message);
+            } else {
+                System.err.println("Ön yüklenen dosya listesi alınamadı: " + error);
+                SwingUtilities.invokeLater(this::requestDocumentList);
+            }
+        });
+    }
+
+    private void updateRttLabel(org.multiuserwordeditor.network.PingMonitor health) {
+        long rtt = health.getLastRttMillis();
+        String text = rtt < 0 ? "RTT -" : "RTT " + rtt + " ms (p95 " + health.getP95Millis() + " ms)";
+        if (health.isDegraded()) {
+            rttLabel.setText("⚠️ " + text);
+            rttLabel.setForeground(new Color(200, 110, 0));
+            rttLabel.setToolTipText("Bağlantı yavaş (eşik " + health.getDegradedThresholdMillis() + " ms) - "
+                    + health.summary());
+        } else {
+            rttLabel.setText(text);
+            rttLabel.setForeground(statusLabel.getForeground());
+            rttLabel.setToolTipText(health.summary());
+        }
+    }
+
+    /**
+     * Mesaj işleyicisi - geçersiz mesajları atlar, hataları kullanıcıya gösterir
+     */
+    private java.util.function.Consumer<Message> guarded(MessageAction action) {
+        return message -> {
             if (message == null || !message.isValid()) {
                 System.out.println("Geçersiz mesaj alındı");
                 return;
@@ -101,53 +226,17 @@ public class MainWindow extends JFrame {
             System.out.println("Main: Mesaj alındı -> " + message.getType());
 
             try {
-                switch (message.getType()) {
-                    case FILE_LIST_RESP:
-                        // RAW MESSAGE DEBUG EKLE
-                        System.out.println("DEBUG: Message serialize edilmiş hali: " + message.serialize());
-
-                        // Data içeriğini direkt kontrol et
-                        String filesData = message.getData("files");
-                        System.out.println("DEBUG: Raw getData('files'): '" + filesData + "'");
-                        System.out.println("DEBUG: Raw getData('files') length: "
-                                + (filesData != null ? filesData.length() : "null"));
-
-                        // Message'daki tüm dataları göster
-                        System.out.println("DEBUG: Message tüm data keys: " + message.getAllDataKeys());
-
-                        handleFileListResponse(message);
-                        break;
-                    case FILE_CONTENT:
-                        handleFileContent(message);
-                        break;
-                    case FILE_CREATE:
-                        handleFileCreated(message);
-                        break;
-                    case TEXT_UPDATE:
-                        handleFileUpdated(message);
-                        break;
-                    case FILE_DELETE_ACK:  // 🔧 NEW: Handle delete response
-                        handleFileDeleteAck(message);
-                        break;
-                    case ERROR:
-                        String errorMsg = message.getData("message");
-                        // Karakter kodlama düzeltmesi
-                        if (errorMsg != null) {
-                            errorMsg = new String(errorMsg.getBytes("ISO-8859-1"), "UTF-8");
-                        }
-                        handleError(errorMsg);
-                        break;
-                    default:
-                        System.out.println("Bilinmeyen mesaj tipi: " + message.getType());
-                        break;
-                }
+                action.handle(message);
             } catch (Exception e) {
                 e.printStackTrace();
                 showError("İşlem sırasında bir hata oluştu: " + e.getMessage());
             }
-        });
+        };
+    }
 
-        requestDocumentList();
+    @FunctionalInterface
+    private interface MessageAction {
+        void handle(Message message) throws Exception;
     }
 
     private void openSelectedFile() {
@@ -162,10 +251,24 @@ public class MainWindow extends JFrame {
         String fileName = selected.getFileName();
 
         System.out.println("DEBUG: Açılacak dosya - ID: " + fileId + ", Name: " + fileName);
+
+        // Zaten açık doküman: bağlantı üzerinden canlı tutuluyor, sadece editöre getir
+        DocumentSession existing = sessions.get(fileId);
+        if (existing != null && existing.isLoaded()) {
+            activateSession(existing);
+            statusLabel.setText("Doküman açıldı: " + existing.getFileName());
+            return;
+        }
+        activateSession(sessionFor(fileId, fileName));
         statusLabel.setText("Dosya açılıyor: " + fileName);
 
         try {
-            networkManager.openDocument(fileId);
+            networkManager.openDocument(fileId).whenComplete((content, error) -> {
+                if (error != null) {
+                    SwingUtilities.invokeLater(() -> statusLabel.setText("❌ Dosya açılamadı: " + fileName
+                            + " (" + describeFailure(error) + ")"));
+                }
+            });
             System.out.println("DEBUG: openDocument çağrıldı: " + fileId);
         } catch (Exception e) {
             System.err.println("ERROR: Dosya açma hatası: " + e.getMessage());
@@ -184,91 +287,76 @@ public class MainWindow extends JFrame {
     }
 
     /**
-     * 🔧 UPDATED: Enhanced file list response handler with better error handling
+     * 🔧 UPDATED: Streaming file list handler - entries are parsed lazily from the
+     * frame and added to the list in chunks so the EDT stays responsive
      */
     private void handleFileListResponse(Message message) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                System.out.println("=== ENHANCED FILE LIST RESPONSE DEBUG ===");
-
-                // Clear current list
-                int oldSize = listModel.size();
-                listModel.clear();
-                System.out.println("DEBUG: Cleared list (previous size: " + oldSize + ")");
-
-                String filesData = message.getData("files");
-                System.out.println("DEBUG: Raw files data: '" + filesData + "'");
-                System.out.println("DEBUG: Files data length: " + (filesData != null ? filesData.length() : "null"));
-
-                if (filesData == null || filesData.trim().isEmpty()) {
-                    System.out.println("DEBUG: No files data received");
-                    statusLabel.setText("📋 Doküman listesi boş");
-                    return;
-                }
+        Iterator<Payload.FileList.Entry> entries = message.getFileList().entries().iterator();
 
-                // Parse and add files (| separated)
-                String[] files = filesData.split("\\|");
-                int addedCount = 0;
+        SwingUtilities.invokeLater(() -> {
+            System.out.println("=== STREAMING FILE LIST RESPONSE ===");
 
-                System.out.println("DEBUG: Processing " + files.length + " file entries");
+            // Clear current list
+            int oldSize = listModel.size();
+            listModel.clear();
+            System.out.println("DEBUG: Cleared list (previous size: " + oldSize + ")");
 
-                for (int i = 0; i < files.length; i++) {
-                    String file = files[i].trim();
-                    System.out.println("DEBUG: Processing file entry " + (i+1) + ": '" + file + "'");
+            appendFileListChunk(entries, 0, ++fileListGeneration);
+        });
+    }
 
-                    if (!file.isEmpty()) {
-                        String[] parts = file.split(":");
-                        if (parts.length >= 2) {
-                            String fileId = parts[0].trim();
-                            String fileName = parts[1].trim();
-                            String userCount = parts.length > 2 ? parts[2].trim() : "0";
+    private void appendFileListChunk(Iterator<Payload.FileList.Entry> entries, int addedSoFar, int generation) {
+        // A newer FILE_LIST_RESP replaced the list - drop the rest of this one
+        if (generation != fileListGeneration) {
+            return;
+        }
 
-                            System.out.println("DEBUG: Parsed - ID: '" + fileId + "', Name: '" + fileName + "', Users: " + userCount);
+        try {
+            List<FileDisplayItem> chunk = new ArrayList<>(FILE_LIST_CHUNK_SIZE);
+            while (chunk.size() < FILE_LIST_CHUNK_SIZE && entries.hasNext()) {
+                Payload.FileList.Entry entry = entries.next();
+                chunk.add(new FileDisplayItem(entry.getFileId(), entry.getFileName(), entry.getUserCount()));
+            }
 
-                            // Create and add item
-                            FileDisplayItem item = new FileDisplayItem(fileId, fileName, userCount);
-                            listModel.addElement(item);
-                            addedCount++;
+            // One list event per chunk instead of one per file
+            listModel.addAll(chunk);
+            int addedCount = addedSoFar + chunk.size();
 
-                            System.out.println("SUCCESS: Added file to list: " + fileName + " (" + fileId + ")");
-                        } else {
-                            System.err.println("WARNING: Invalid file entry format: '" + file + "' (expected at least 2 parts, got " + parts.length + ")");
-                        }
-                    } else {
-                        System.out.println("DEBUG: Skipping empty file entry at index " + i);
-                    }
-                }
+            if (entries.hasNext()) {
+                statusLabel.setText("📋 " + addedCount + " doküman yükleniyor...");
+                SwingUtilities.invokeLater(() -> appendFileListChunk(entries, addedCount, generation));
+                return;
+            }
 
-                // Update UI and status
-                documentList.revalidate();
-                documentList.repaint();
+            // Update UI and status
+            documentList.revalidate();
+            documentList.repaint();
 
-                String statusText;
-                if (addedCount == 0) {
-                    statusText = "📋 Henüz doküman yok";
-                } else {
-                    statusText = "📋 " + addedCount + " doküman yüklendi";
-                }
-                statusLabel.setText(statusText);
+            String statusText;
+            if (addedCount == 0) {
+                statusText = "📋 Henüz doküman yok";
+            } else {
+                statusText = "📋 " + addedCount + " doküman yüklendi";
+            }
+            statusLabel.setText(statusText);
 
-                System.out.println("SUCCESS: File list updated - " + addedCount + " files added");
-                System.out.println("=== ENHANCED FILE LIST RESPONSE END ===");
+            System.out.println("SUCCESS: File list updated - " + addedCount + " files added");
+            System.out.println("=== STREAMING FILE LIST RESPONSE END ===");
 
-            } catch (Exception e) {
-                System.err.println("ERROR: File list response processing failed: " + e.getMessage());
-                e.printStackTrace();
-                statusLabel.setText("❌ Liste güncelleme hatası: " + e.getMessage());
-                showError("Doküman listesi güncelleme hatası: " + e.getMessage());
-            }
-        });
+        } catch (Exception e) {
+            System.err.println("ERROR: File list response processing failed: " + e.getMessage());
+            e.printStackTrace();
+            statusLabel.setText("❌ Liste güncelleme hatası: " + e.getMessage());
+            showError("Doküman listesi güncelleme hatası: " + e.getMessage());
+        }
     }
 
     private static class FileDisplayItem {
         private final String fileId;
         private final String fileName;
-        private final String userCount;
+        private final int userCount;
 
-        public FileDisplayItem(String fileId, String fileName, String userCount) {
+        public FileDisplayItem(String fileId, String fileName, int userCount) {
             this.fileId = fileId;
             this.fileName = fileName;
             this.userCount = userCount;
@@ -282,14 +370,14 @@ public class MainWindow extends JFrame {
             return fileName;
         }
 
-        public String getUserCount() {
+        public int getUserCount() {
             return userCount;
         }
 
         @Override
         public String toString() {
             // Dosya adını ve aktif kullanıcı sayısını göster
-            if (userCount != null && !userCount.equals("0")) {
+            if (userCount != 0) {
                 return fileName;
             }
             return fileName;
@@ -298,19 +386,46 @@ public class MainWindow extends JFrame {
 
     private void handleFileContent(Message message) {
         SwingUtilities.invokeLater(() -> {
-            String content = message.getData("content");
-            String filename = message.getData("filename");
+            Payload.Content payload = message.getContent();
+            String content = payload.getContent();
+            String filename = payload.getFilename();
+
+            if (message.getFileId() == null) {
+                System.err.println("FILE_CONTENT without fileId ignored: " + filename);
+                return;
+            }
+            DocumentSession session = sessionFor(message.getFileId(), filename);
+            session.setFileName(filename);
+
+            // "ot": içerik revizyonu, bekleyen yerel işlem olmadan yeni başlangıç noktasıdır
+            if (!payload.isChunked() || payload.getChunk() == 0) {
+                networkManager.openOtDocument(message.getFileId(), message);
+            }
+
+            if (payload.isChunked()) {
+                appendContentChunk(session, message);
+                return;
+            }
+
+            // "crdt": kopya içeriğin görünür metni ve koşu iskeletinden kurulur
+            networkManager.openCrdtDocument(message.getFileId(), message, content);
+
             System.out.println("Doküman içeriği alındı: " + filename);
 
             if (content != null) {
                 // ✅ INITIAL LOAD İÇİN DE FLAG SET ET
                 isUpdatingFromServer = true;
-
-                editorPane.setText(content);
-                editorPane.setCaretPosition(0);
-                lastContent = content; // Son içeriği güncelle
-
-                isUpdatingFromServer = false; // ✅ FLAG RESET
+                try {
+                    session.replaceText(content);
+                    session.setLoaded(true);
+                    if (session == activeSession) {
+                        editorPane.setCaretPosition(0);
+                    }
+                } catch (BadLocationException e) {
+                    LOGGER.log(Level.WARNING, "Doküman içeriği yazılamadı", e);
+                } finally {
+                    isUpdatingFromServer = false; // ✅ FLAG RESET
+                }
 
                 statusLabel.setText("Doküman açıldı: " + filename);
             } else {
@@ -319,6 +434,117 @@ public class MainWindow extends JFrame {
         });
     }
 
+    // EDT: fileId için oturumu bulur veya oluşturur (kendi dokümanı ve dinleyicisiyle)
+    private DocumentSession sessionFor(String fileId, String fileName) {
+        return sessions.computeIfAbsent(fileId, id -> {
+            SessionDocument document = new SessionDocument();
+            document.addDocumentListener(editorDocumentListener);
+            System.out.println("DEBUG: New document session: " + id + " (" + sessions.size() + " already open)");
+            return new DocumentSession(id, fileName, document, INBOUND_CAPACITY);
+        });
+    }
+
+    // EDT: oturumun dokümanını editöre takar; önceki oturumun imleci saklanır
+    private void activateSession(DocumentSession session) {
+        if (session == activeSession) {
+            return;
+        }
+        if (activeSession != null) {
+            activeSession.setCaretPosition(editorPane.getCaretPosition());
+        }
+        activeSession = session;
+        isUpdatingFromServer = true;
+        try {
+            editorPane.setDocument(session.getDocument());
+            editorPane.setCaretPosition(session.getCaretPosition());
+            editorPane.setEditable(session.getExpectedContentChunk() < 0);
+        } finally {
+            isUpdatingFromServer = false;
+        }
+    }
+
+    // EDT: silinen dokümanın oturumu kapatılır
+    private void closeSession(String fileId) {
+        DocumentSession session = sessions.remove(fileId);
+        if (session == null) {
+            return;
+        }
+        session.getDocument().removeDocumentListener(editorDocumentListener);
+        networkManager.closeOtDocument(fileId);
+        networkManager.closeCrdtDocument(fileId);
+        if (session == activeSession) {
+            activeSession = null;
+            isUpdatingFromServer = true;
+            try {
+                StyledDocument empty = (StyledDocument) editorPane.getEditorKit().createDefaultDocument();
+                empty.addDocumentListener(editorDocumentListener);
+                editorPane.setDocument(empty);
+            } finally {
+                isUpdatingFromServer = false;
+            }
+        }
+    }
+
+    /**
+     * Parçalı FILE_CONTENT: ilk parça editörü sıfırlar ve hemen gösterilir,
+     * sonraki parçalar doküman sonuna eklenir. Editör son parçaya kadar salt okunurdur.
+     * "crdt" kopyası son parçada (koşu iskeleti onunla gelir) tam metinden kurulur.
+     */
+    private void appendContentChunk(DocumentSession session, Message message) {
+        Payload.Content payload = message.getContent();
+        int chunk = payload.getChunk();
+        String piece = payload.getContent() != null ? payload.getContent() : "";
+        boolean active = session == activeSession;
+
+        if (chunk == 0) {
+            session.setExpectedContentChunk(0);
+        } else if (chunk != session.getExpectedContentChunk()) {
+            // Eksik/sırasız parça - dokümanı baştan iste
+            System.err.println("Beklenmeyen içerik parçası: " + chunk + " (beklenen "
+                    + session.getExpectedContentChunk() + ")");
+            boolean wasLoading = session.getExpectedContentChunk() >= 0;
+            session.setExpectedContentChunk(-1);
+            if (wasLoading) {
+                statusLabel.setText("Doküman eksik alındı, yeniden yükleniyor...");
+                networkManager.openDocument(session.getFileId());
+            }
+            return;
+        }
+
+        isUpdatingFromServer = true;
+        try {
+            StyledDocument doc = session.getDocument();
+            if (chunk == 0) {
+                networkManager.closeCrdtDocument(session.getFileId());
+                session.setLoaded(false);
+                session.replaceText(piece);
+                if (active) {
+                    editorPane.setCaretPosition(0);
+                    editorPane.setEditable(payload.isLastChunk());
+                }
+            } else {
+                doc.insertString(doc.getLength(), piece, null);
+            }
+        } catch (BadLocationException e) {
+            LOGGER.log(Level.WARNING, "İçerik parçası eklenemedi", e);
+        } finally {
+            isUpdatingFromServer = false;
+        }
+        session.setExpectedContentChunk(session.getExpectedContentChunk() + 1);
+
+        if (payload.isLastChunk()) {
+            session.setLoaded(true);
+            session.setExpectedContentChunk(-1);
+            networkManager.openCrdtDocument(session.getFileId(), message, session.getText());
+            if (active) {
+                editorPane.setEditable(true);
+            }
+            statusLabel.setText("Doküman açıldı: " + payload.getFilename());
+        } else {
+            statusLabel.setText("Doküman yükleniyor... (" + session.getExpectedContentChunk() + " parça)");
+        }
+    }
+
     /**
      * 🔧 UPDATED: File created handler with automatic list refresh
      */
@@ -333,7 +559,7 @@ public class MainWindow extends JFrame {
 
             if (filename != null && fileId != null) {
                 // 🔧 IMMEDIATE: Add to list right away (optimistic update)
-                FileDisplayItem newItem = new FileDisplayItem(fileId, filename, "0");
+                FileDisplayItem newItem = new FileDisplayItem(fileId, filename, 0);
 
                 // Check if already exists in list
                 boolean alreadyExists = false;
@@ -361,14 +587,6 @@ public class MainWindow extends JFrame {
                     documentList.repaint();
                 }
 
-                // 🔧 ADDITIONAL: Request fresh list from server (for accuracy)
-                javax.swing.Timer refreshTimer = new javax.swing.Timer(500, e -> {
-                    System.out.println("DEBUG: Requesting fresh file list after creation");
-                    networkManager.forceFileListRefresh();
-                });
-                refreshTimer.setRepeats(false);
-                refreshTimer.start();
-
             } else {
                 System.err.println("ERROR: Invalid file creation response - filename or fileId is null");
                 statusLabel.setText("❌ Dosya oluşturma hatası: Geçersiz yanıt");
@@ -382,379 +600,359 @@ public class MainWindow extends JFrame {
     }
 
     /**
-     * 🔧 THREAD-SAFE handleTextChange with newline awareness
+     * Yerel düzenleme: eklenen metin DocumentEvent konumundan Segment ile okunur,
+     * tam metin kopyalanmaz ve önceki metinle karşılaştırılmaz (O(düzenleme boyutu))
      */
-    private void handleTextChange() {
-        // Prevent concurrent text change processing
-        synchronized (textChangeLock) {
-            if (isUpdatingFromServer || isProcessingTextChange) {
-                System.out.println("DEBUG: handleTextChange SKIPPED - flags: updating=" +
-                        isUpdatingFromServer + ", processing=" + isProcessingTextChange);
-                return;
-            }
-
-            isProcessingTextChange = true;
+    private void handleLocalInsert(DocumentEvent e) {
+        DocumentSession session = sessionOf(e.getDocument());
+        if (session == null || !session.isLoaded()) {
+            LOGGER.fine("No open document, skipping text change");
+            return;
         }
 
+        int position = e.getOffset();
+        int length = e.getLength();
+        Segment segment = localEditSegment;
         try {
-            FileDisplayItem selected = documentList.getSelectedValue();
-            if (selected == null) {
-                System.out.println("DEBUG: No file selected, skipping text change");
-                return;
-            }
-
-            String currentContent = editorPane.getText();
-            String fileId = selected.getFileId();
-
-            System.out.println("=== THREAD-SAFE TEXT CHANGE DEBUG ===");
-            System.out.println("DEBUG: Current content length: " + currentContent.length());
-            System.out.println("DEBUG: Last content length: " + lastContent.length());
+            e.getDocument().getText(position, length, segment);
+        } catch (BadLocationException ex) {
+            LOGGER.log(Level.WARNING, "Eklenen metin okunamadı", ex);
+            return;
+        }
 
-            // Content equality check (important for newlines)
-            if (currentContent.equals(lastContent)) {
-                System.out.println("DEBUG: Content unchanged, skipping");
-                return;
-            }
+        LOGGER.fine(() -> "INSERT - pos: " + position + ", len: " + length);
 
-            // 🔧 ENHANCED DIFF DETECTION
-            ContentDiff diff = analyzeContentDifference(lastContent, currentContent);
+        // Turkish character check (except newlines)
+        if (containsTurkishCharacters(segment)) {
+            handleTurkishCharacterError(position, length);
+            return;
+        }
 
-            if (diff != null) {
-                if (diff.isInsert) {
-                    System.out.println("DEBUG: Processing INSERT operation");
-                    processInsertOperation(fileId, diff);
-                } else {
-                    System.out.println("DEBUG: Processing DELETE operation");
-                    processDeleteOperation(fileId, diff);
-                }
+        // Escaped/binary protocol sends the insert in one frame, legacy servers get one
+        // frame per character; pacing is the ack window's job, never a sleep on the EDT
+        networkManager.insertText(session.getFileId(), position, segment.toString());
+    }
 
-                // Update lastContent only after successful processing
-                lastContent = currentContent;
-                System.out.println("DEBUG: lastContent updated successfully");
+    /**
+     * Yerel silme: konum ve uzunluk doğrudan olaydan gelir. Seçimin üzerine yazma
+     * (yapıştırma, seçiliyken yazma) Swing'de remove + insert olarak gelir ve
+     * iki ayrı işlem olarak doğru gönderilir
+     */
+    private void handleLocalRemove(DocumentEvent e) {
+        DocumentSession session = sessionOf(e.getDocument());
+        if (session == null || !session.isLoaded()) {
+            LOGGER.fine("No open document, skipping text change");
+            return;
+        }
 
-            } else {
-                System.err.println("ERROR: Could not analyze content difference");
-                // Fallback - sync with current content
-                lastContent = currentContent;
-            }
+        LOGGER.fine(() -> "DELETE - pos: " + e.getOffset() + ", length: " + e.getLength());
+        networkManager.deleteText(session.getFileId(), e.getOffset(), e.getLength());
+    }
 
-        } catch (Exception e) {
-            System.err.println("ERROR: handleTextChange exception: " + e.getMessage());
-            e.printStackTrace();
-            // Emergency fallback
-            lastContent = editorPane.getText();
-        } finally {
-            synchronized (textChangeLock) {
-                isProcessingTextChange = false;
+    // Olayın dokümanına ait oturum; neredeyse her zaman aktif oturumdur
+    private DocumentSession sessionOf(javax.swing.text.Document document) {
+        DocumentSession session = activeSession;
+        if (session != null && session.getDocument() == document) {
+            return session;
+        }
+        for (DocumentSession candidate : sessions.values()) {
+            if (candidate.getDocument() == document) {
+                return candidate;
             }
-            System.out.println("=== THREAD-SAFE TEXT CHANGE END ===");
         }
+        return null;
     }
 
     /**
-     * 🔧 Advanced content difference analysis
+     * 🔧 Enhanced server update handling with thread safety
      */
-    private ContentDiff analyzeContentDifference(String oldContent, String newContent) {
-        try {
-            int oldLen = oldContent.length();
-            int newLen = newContent.length();
-
-            if (newLen > oldLen) {
-                // INSERT operation
-                int insertPos = findInsertPosition(oldContent, newContent);
-                int insertLen = newLen - oldLen;
-                String insertedText = newContent.substring(insertPos, insertPos + insertLen);
-
-                return new ContentDiff(true, insertPos, insertLen, insertedText);
-
-            } else if (newLen < oldLen) {
-                // DELETE operation
-                int deleteLen = oldLen - newLen;
-
-                // Find delete position using LCS (Longest Common Subsequence) approach
-                int deletePos = findDeletePosition(oldContent, newContent);
-                String deletedText = oldContent.substring(deletePos, deletePos + deleteLen);
-
-                return new ContentDiff(false, deletePos, deleteLen, deletedText);
-            }
-
-            return null; // No change
-
-        } catch (Exception e) {
-            System.err.println("ERROR: analyzeContentDifference failed: " + e.getMessage());
-            return null;
+    /**
+     * WebSocket thread'i: düzenleme halkaya konur; her biri için ayrı invokeLater yerine
+     * EDT bir sonraki karede biriken tüm düzenlemeleri tek seferde uygular
+     */
+    private void handleFileUpdated(Message message) {
+        // Sadece bu dokümanın oturumuna gider; açık olmayan dokümanın düzenlemesi editöre uygulanmaz
+        DocumentSession session = message.getFileId() != null ? sessions.get(message.getFileId()) : null;
+        if (session == null) {
+            LOGGER.fine(() -> "TEXT_UPDATE for unopened document ignored: " + message.getFileId());
+            return;
+        }
+        session.getInbound().put(message);
+        if (remoteEditFrameScheduled.compareAndSet(false, true)) {
+            remoteEditTimer.restart();
         }
     }
 
     /**
-     * 🔧 Enhanced delete position finding with newline awareness
+     * "ot": TEXT_ACK da uzak düzenlemelerle aynı halkadan, geliş sırasıyla işlenir;
+     * bir uzak işlemin hangi yerel işlemlerden sonra uygulandığı bu sıradan anlaşılır
      */
-    private int findDeletePosition(String oldContent, String newContent) {
-        int oldLen = oldContent.length();
-        int newLen = newContent.length();
-
-        // Find common prefix
-        int commonPrefix = 0;
-        int minLen = Math.min(oldLen, newLen);
-
-        for (int i = 0; i < minLen; i++) {
-            if (oldContent.charAt(i) == newContent.charAt(i)) {
-                commonPrefix++;
-            } else {
-                break;
-            }
+    private void handleEditAck(Message message) {
+        DocumentSession session = message.getFileId() != null ? sessions.get(message.getFileId()) : null;
+        if (session == null || networkManager.getOtDocument(message.getFileId()) == null) {
+            return;
         }
-
-        System.out.println("DEBUG: findDeletePosition - common prefix: " + commonPrefix);
-
-        // 🔧 NEWLINE BOUNDARY CHECK
-        if (commonPrefix > 0 && commonPrefix < oldLen) {
-            char prevChar = oldContent.charAt(commonPrefix - 1);
-            char deletedChar = oldContent.charAt(commonPrefix);
-
-            System.out.println("DEBUG: Character before delete: '" +
-                    (prevChar == '\n' ? "NEWLINE" : String.valueOf(prevChar)) + "'");
-            System.out.println("DEBUG: First deleted character: '" +
-                    (deletedChar == '\n' ? "NEWLINE" : String.valueOf(deletedChar)) + "'");
+        session.getInbound().put(message);
+        if (remoteEditFrameScheduled.compareAndSet(false, true)) {
+            remoteEditTimer.restart();
         }
-
-        return commonPrefix;
     }
 
     /**
-     * 🔧 Process INSERT operation with delays
+     * EDT: her oturumun bekleyen uzak düzenlemelerini sırayla, konumlarına göre
+     * doğrudan dokümanına uygular (maliyet değişiklik boyutu kadar)
      */
-    private void processInsertOperation(String fileId, ContentDiff diff) {
-        try {
-            System.out.println("DEBUG: INSERT - pos: " + diff.position +
-                    ", text: '" + diff.text.replace("\n", "\\n") + "'");
-
-            // Turkish character check (except newlines)
-            if (containsTurkishCharacters(diff.text)) {
-                handleTurkishCharacterError(diff.position, diff.length);
-                return;
-            }
+    private void applyRemoteEdits() {
+        // Bayrak boşaltmadan önce bırakılır; bundan sonra gelen düzenleme yeni kare planlar
+        remoteEditFrameScheduled.set(false);
+        boolean more = false;
+        for (DocumentSession session : sessions.values()) {
+            applyRemoteEdits(session);
+            more |= !session.getInbound().isEmpty();
+        }
+        if (more && remoteEditFrameScheduled.compareAndSet(false, true)) {
+            remoteEditTimer.restart();
+        }
+    }
 
-            // Send each character separately with appropriate delays
-            for (int i = 0; i < diff.text.length(); i++) {
-                char c = diff.text.charAt(i);
-                String singleChar = String.valueOf(c);
-                int charPosition = diff.position + i;
+    private void applyRemoteEdits(DocumentSession session) {
+        SpscRingBuffer<Message> inbound = session.getInbound();
+        remoteEditBatch.clear();
+        int count = inbound.drainTo(remoteEditBatch::add, MAX_REMOTE_EDITS_PER_FRAME);
+        if (count == 0) {
+            return;
+        }
 
-                System.out.println("DEBUG: Sending character '" +
-                        (c == '\n' ? "NEWLINE" : c == ' ' ? "SPACE" : String.valueOf(c)) +
-                        "' at position " + charPosition);
+        synchronized (textChangeLock) {
+            isUpdatingFromServer = true;
+        }
 
-                networkManager.insertText(fileId, charPosition, singleChar);
+        // İmleç ve seçim uzak düzenlemelere göre kaydırılır: {mark, dot}
+        boolean active = session == activeSession;
+        Caret caret = editorPane.getCaret();
+        DefaultCaret defaultCaret = active && caret instanceof DefaultCaret ? (DefaultCaret) caret : null;
+        int caretPolicy = defaultCaret != null ? defaultCaret.getUpdatePolicy() : DefaultCaret.UPDATE_WHEN_ON_EDT;
+        int[] selection = active ? new int[] { caret.getMark(), caret.getDot() }
+                : new int[] { session.getCaretPosition(), session.getCaretPosition() };
 
-                // 🔧 NEWLINE-SPECIFIC DELAY
-                if (c == '\n') {
-                    try { Thread.sleep(100); } catch (InterruptedException e) {} // Longer delay for newlines
-                } else if (diff.text.length() > 3) {
-                    try { Thread.sleep(20); } catch (InterruptedException e) {}
-                }
+        try {
+            if (defaultCaret != null) {
+                defaultCaret.setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
             }
+            SessionDocument document = session.getDocument();
+            OtDocument ot = networkManager.getOtDocument(session.getFileId());
+            CrdtDocument crdt = networkManager.getCrdtDocument(session.getFileId());
+            document.applyLocked(() -> {
+                for (Message message : remoteEditBatch) {
+                    applyRemoteEdit(document, ot, crdt, message, selection);
+                }
+            });
+
+            LOGGER.fine(() -> "Applied " + count + " remote edits to " + session.getFileId()
+                    + " in one frame (queue lag " + inbound.getLastLagMicros() + "us) - " + inbound.summary());
 
         } catch (Exception e) {
-            System.err.println("ERROR: processInsertOperation failed: " + e.getMessage());
+            System.err.println("File update error: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (defaultCaret != null) {
+                defaultCaret.setUpdatePolicy(caretPolicy);
+            }
+            remoteEditBatch.clear();
+            synchronized (textChangeLock) {
+                isUpdatingFromServer = false;
+            }
+        }
+
+        int length = session.getDocument().getLength();
+        if (active) {
+            caret.setDot(Math.min(selection[0], length));
+            caret.moveDot(Math.min(selection[1], length));
+        } else {
+            session.setCaretPosition(Math.min(selection[1], length));
         }
     }
 
-    /**
-     * 🔧 Process DELETE operation with validation
-     */
-    private void processDeleteOperation(String fileId, ContentDiff diff) {
-        try {
-            System.out.println("DEBUG: DELETE - pos: " + diff.position +
-                    ", length: " + diff.length +
-                    ", text: '" + diff.text.replace("\n", "\\n") + "'");
-
-            // Validation before sending
-            if (diff.position < 0 || diff.length <= 0) {
-                System.err.println("ERROR: Invalid delete parameters - pos: " + diff.position +
-                        ", len: " + diff.length);
-                return;
+    private void applyRemoteEdit(SessionDocument document, OtDocument ot, CrdtDocument crdt, Message message,
+            int[] selection) {
+        Integer revision = message.getDataAsInt(Message.REVISION_KEY);
+        if (message.getType() == Message.MessageType.TEXT_ACK) {
+            if (ot != null && revision != null) {
+                ot.acknowledge(revision);
             }
+            return;
+        }
 
-            // 🔧 NEWLINE DELETE ANALYSIS
-            long newlineCount = diff.text.chars().filter(ch -> ch == '\n').count();
-            if (newlineCount > 0) {
-                System.out.println("🔥 DELETE contains " + newlineCount + " newline(s) - sending with delay");
+        Payload.TextEdit edit = message.getTextEdit();
+        if (edit == null || edit.getPosition() == Payload.NOT_SET) {
+            System.err.println("File update error: missing position in " + message.getType());
+            return;
+        }
 
-                // Longer delay for newline-containing deletes
-                try { Thread.sleep(150); } catch (InterruptedException e) {}
-            }
+        String operation = edit.getOperation();
+        String textValue = edit.getText();
+        int position = edit.getPosition();
+        String senderId = message.getUserId();
 
-            // Send delete operation
-            networkManager.deleteText(fileId, diff.position, diff.length);
+        // Decode special characters (legacy protocol only - escaped text arrives verbatim)
+        String text = networkManager.supportsMultiCharInsert()
+                ? (textValue != null ? textValue : "")
+                : decodeSpecialCharacters(textValue);
 
-        } catch (Exception e) {
-            System.err.println("ERROR: processDeleteOperation failed: " + e.getMessage());
-            e.printStackTrace();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("SERVER UPDATE: " + operation + " by " + senderId + " at pos " + position + " char: "
+                    + (text.equals("\n") ? "NEWLINE" : text.equals(" ") ? "SPACE" : "'" + text + "'"));
         }
-    }
 
-    /**
-     * 🔧 Content difference data structure
-     */
-    private static class ContentDiff {
-        final boolean isInsert;
-        final int position;
-        final int length;
-        final String text;
+        if (crdt != null && applyCrdtEdit(document, crdt, message, edit, text, senderId, selection)) {
+            return;
+        }
 
-        ContentDiff(boolean isInsert, int position, int length, String text) {
-            this.isInsert = isInsert;
-            this.position = position;
-            this.length = length;
-            this.text = text;
+        int length = edit.isInsert() ? text.length() : edit.getLength();
+        if (ot != null && (edit.isInsert() || edit.isDelete())) {
+            // Henüz onaylanmamış yerel işlemlerin üzerine kaydırılır
+            long transformed = ot.transformRemote(edit.isInsert(), position, length,
+                    revision != null ? revision : -1);
+            if (OtDocument.lengthOf(transformed) == 0) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("OT - " + operation + " at " + position + " is a no-op after the pending local edits");
+                }
+                return;
+            }
+            if (LOGGER.isLoggable(Level.FINE)
+                    && (OtDocument.positionOf(transformed) != position || OtDocument.lengthOf(transformed) != length)) {
+                LOGGER.fine("OT - " + operation + " " + position + ":" + length + " -> "
+                        + OtDocument.positionOf(transformed) + ":" + OtDocument.lengthOf(transformed)
+                        + " (" + ot.getPendingCount() + " pending, rev " + ot.getRevision() + ")");
+            }
+            position = OtDocument.positionOf(transformed);
+            length = OtDocument.lengthOf(transformed);
         }
 
-        @Override
-        public String toString() {
-            return String.format("ContentDiff{%s, pos=%d, len=%d, text='%s'}",
-                    isInsert ? "INSERT" : "DELETE", position, length,
-                    text.replace("\n", "\\n"));
+        if (edit.isInsert()) {
+            handleServerInsert(document, position, text, senderId, selection);
+        } else if (edit.isDelete()) {
+            handleServerDelete(document, position, length, senderId, selection);
         }
     }
 
     /**
-     * 🔧 Enhanced server update handling with thread safety
+     * "crdt": düzenlemenin yerini pozisyon değil karakter kimlikleri belirler; kopya
+     * bu dokümandaki pozisyonu verir. Kimliksiz düzenleme false döner ve pozisyonuyla uygulanır
      */
-    private void handleFileUpdated(Message message) {
-        SwingUtilities.invokeLater(() -> {
-            synchronized (textChangeLock) {
-                isUpdatingFromServer = true;
+    private boolean applyCrdtEdit(SessionDocument document, CrdtDocument crdt, Message message,
+            Payload.TextEdit edit, String text, String senderId, int[] selection) {
+        String id = message.getData(Message.CRDT_ID_KEY);
+        String ids = message.getData(Message.CRDT_IDS_KEY);
+        try {
+            if (edit.isInsert() && id != null) {
+                String origin = message.getData(Message.CRDT_ORIGIN_KEY);
+                int position = crdt.integrateInsert(CrdtDocument.parseId(id),
+                        origin != null ? CrdtDocument.parseId(origin) : CrdtDocument.ROOT, text);
+                if (position < 0) {
+                    LOGGER.fine(() -> "CRDT - insert " + id + " already applied or not placeable");
+                    return true;
+                }
+                handleServerInsert(document, position, text, senderId, selection);
+                return true;
             }
-
-            try {
-                String operation = message.getData("operation");
-                String textValue = message.getData("text");
-                int position = Integer.parseInt(message.getData("position"));
-                String senderId = message.getUserId();
-
-                // Decode special characters
-                String text = decodeSpecialCharacters(textValue);
-
-                System.out.println("SERVER UPDATE: " + operation + " by " + senderId +
-                        " at pos " + position + " char: " +
-                        (text.equals("\n") ? "NEWLINE" :
-                                text.equals(" ") ? "SPACE" : "'" + text + "'"));
-
-                if ("insert".equals(operation) || "INSERT".equals(operation)) {
-                    handleServerInsert(position, text, senderId);
-                } else if ("delete".equals(operation) || "DELETE".equals(operation)) {
-                    int deleteLength = Integer.parseInt(message.getData("length"));
-                    handleServerDelete(position, deleteLength, senderId);
+            if (edit.isDelete() && ids != null) {
+                int removed = crdt.integrateDelete(ids,
+                        (position, length) -> handleServerDelete(document, position, length, senderId, selection));
+                if (removed == 0) {
+                    LOGGER.fine(() -> "CRDT - delete " + ids + " already applied");
                 }
+                return true;
+            }
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("CRDT: bad ids in " + message.getType() + ": " + e.getMessage());
+            return true;
+        }
+        if (edit.isInsert() || edit.isDelete()) {
+            LOGGER.warning("CRDT: " + edit.getOperation() + " without ids, applied by position");
+        }
+        return false;
+    }
 
-            } catch (Exception e) {
-                System.err.println("File update error: " + e.getMessage());
-                e.printStackTrace();
-            } finally {
-                synchronized (textChangeLock) {
-                    isUpdatingFromServer = false;
-                }
+    // Uzak ekleme: eklemeden sonraki (aynı noktadaki hariç) imleç/seçim uçları kayar
+    private static void shiftForInsert(int[] selection, int position, int length) {
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i] > position) {
+                selection[i] += length;
             }
-        });
+        }
+    }
+
+    // Uzak silme: silinen aralıktaki uçlar aralığın başına, sonrakiler geri kayar
+    private static void shiftForDelete(int[] selection, int position, int length) {
+        for (int i = 0; i < selection.length; i++) {
+            if (selection[i] >= position + length) {
+                selection[i] -= length;
+            } else if (selection[i] > position) {
+                selection[i] = position;
+            }
+        }
     }
 
     /**
      * 🔧 Handle server INSERT with position validation
      */
-    private void handleServerInsert(int position, String text, String senderId) {
+    private void handleServerInsert(StyledDocument document, int position, String text, String senderId,
+            int[] selection) {
         try {
-            String currentContent = editorPane.getText();
-
             // Position validation and auto-fix
             if (position < 0) position = 0;
-            if (position > currentContent.length()) position = currentContent.length();
-
-            System.out.println("DEBUG: Server INSERT - original pos: " + position +
-                    ", content length: " + currentContent.length());
-
-            // Apply insert
-            String newContent = currentContent.substring(0, position) + text +
-                    currentContent.substring(position);
-
-            editorPane.setText(newContent);
-            lastContent = newContent; // Update immediately to prevent loops
-
-            // Log success
-            if (text.equals("\n")) {
-                System.out.println("✏️ " + senderId + " added NEWLINE at position " + position);
-            } else if (text.equals(" ")) {
-                System.out.println("✏️ " + senderId + " added SPACE at position " + position);
-            } else {
-                System.out.println("✏️ " + senderId + " added: \"" + text + "\" at position " + position);
+            if (position > document.getLength()) position = document.getLength();
+
+            // Apply insert - önceki karakterin biçimiyle
+            AttributeSet attributes = position > 0
+                    ? document.getCharacterElement(position - 1).getAttributes()
+                    : null;
+            document.insertString(position, text, attributes);
+            shiftForInsert(selection, position, text.length());
+
+            // Yazma kilidi altında çalışır; iz sadece FINE açıksa üretilir
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("✏️ " + senderId + " inserted " + text.length() + " chars at position " + position);
             }
 
         } catch (Exception e) {
-            System.err.println("ERROR: handleServerInsert failed: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.log(Level.WARNING, "handleServerInsert failed", e);
         }
     }
 
     /**
      * 🔧 Handle server DELETE with enhanced validation
      */
-    private void handleServerDelete(int position, int length, String senderId) {
+    private void handleServerDelete(StyledDocument document, int position, int length, String senderId,
+            int[] selection) {
         try {
-            String currentContent = editorPane.getText();
-
-            System.out.println("DEBUG: Server DELETE - pos: " + position +
-                    ", length: " + length + ", content length: " + currentContent.length());
-
             // Enhanced validation for DELETE
-            if (position < 0) {
-                System.err.println("ERROR: Invalid delete position: " + position);
-                return;
-            }
-
-            if (position >= currentContent.length()) {
-                System.err.println("ERROR: Delete position beyond content: " + position +
-                        " >= " + currentContent.length());
-                return;
-            }
-
-            if (length <= 0) {
-                System.err.println("ERROR: Invalid delete length: " + length);
+            if (position < 0 || position >= document.getLength() || length <= 0) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Invalid server DELETE ignored - pos: " + position + ", length: " + length
+                            + ", content length: " + document.getLength());
+                }
                 return;
             }
 
             // Auto-fix length if too big
-            int maxLength = currentContent.length() - position;
+            int maxLength = document.getLength() - position;
             if (length > maxLength) {
-                System.out.println("DEBUG: Auto-fixing delete length: " + length + " → " + maxLength);
                 length = maxLength;
             }
 
-            // Get text to be deleted for logging
-            String deletedText = currentContent.substring(position, position + length);
-            long newlineCount = deletedText.chars().filter(ch -> ch == '\n').count();
-
-            System.out.println("DEBUG: Deleting text: '" + deletedText.replace("\n", "\\n") +
-                    "' (contains " + newlineCount + " newlines)");
-
             // Apply delete
-            String newContent = currentContent.substring(0, position) +
-                    currentContent.substring(position + length);
-
-            editorPane.setText(newContent);
-            lastContent = newContent; // Update immediately to prevent loops
+            document.remove(position, length);
+            shiftForDelete(selection, position, length);
 
-            // Log success
-            if (newlineCount > 0) {
-                System.out.println("🗑️ " + senderId + " deleted " + length + " characters including " +
-                        newlineCount + " newline(s) at position " + position);
-            } else {
-                System.out.println("🗑️ " + senderId + " deleted " + length + " characters at position " + position);
+            // Yazma kilidi altında çalışır; iz sadece FINE açıksa üretilir
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("🗑️ " + senderId + " deleted " + length + " chars at position " + position);
             }
 
         } catch (Exception e) {
-            System.err.println("ERROR: handleServerDelete failed: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.log(Level.WARNING, "handleServerDelete failed", e);
         }
     }
 
@@ -829,8 +1027,16 @@ public class MainWindow extends JFrame {
 
             System.out.println("DEBUG: Sending delete request for: " + fileId);
 
-            // Send delete request
-            networkManager.deleteDocument(fileId);
+            // Send delete request - sonuç FILE_DELETE_ACK işleyicisinde gösterilir
+            networkManager.deleteDocument(fileId).whenComplete((ack, error) -> {
+                if (error != null) {
+                    SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText("❌ Silme hatası: " + describeFailure(error));
+                        // İyimser olarak kaldırılan dosya listeye geri gelsin
+                        requestDocumentList();
+                    });
+                }
+            });
 
             System.out.println("SUCCESS: Delete request sent successfully");
 
@@ -845,30 +1051,6 @@ public class MainWindow extends JFrame {
                 }
             }
 
-            // 🔧 LOADING ANIMATION
-            javax.swing.Timer loadingTimer = new javax.swing.Timer(200, null);
-            loadingTimer.addActionListener(e -> {
-                String currentText = statusLabel.getText();
-                if (currentText.contains("...")) {
-                    statusLabel.setText(currentText.replace("...", "."));
-                } else if (currentText.contains("..")) {
-                    statusLabel.setText(currentText.replace("..", "..."));
-                } else if (currentText.contains(".")) {
-                    statusLabel.setText(currentText.replace(".", ".."));
-                }
-            });
-            loadingTimer.start();
-
-            // Stop loading after 10 seconds
-            javax.swing.Timer stopTimer = new javax.swing.Timer(10000, e -> {
-                loadingTimer.stop();
-                if (statusLabel.getText().contains("siliniyor")) {
-                    statusLabel.setText("⏳ Silme işlemi devam ediyor...");
-                }
-            });
-            stopTimer.setRepeats(false);
-            stopTimer.start();
-
         } catch (Exception e) {
             System.err.println("ERROR: Failed to initiate delete: " + e.getMessage());
             e.printStackTrace();
@@ -876,8 +1058,7 @@ public class MainWindow extends JFrame {
             showError("Dosya silme hatası: " + e.getMessage());
 
             // 🔧 ROLLBACK: Add file back to list if optimistic update was done
-            // This is a simple rollback - in production you might want more sophisticated handling
-            scheduleFileListRefresh();
+            requestDocumentList();
         }
 
         System.out.println("=== DELETE DOCUMENT HANDLER END ===");
@@ -903,6 +1084,8 @@ public class MainWindow extends JFrame {
                     // 🔧 SUCCESS: Update UI and show success message
                     statusLabel.setText("✅ Dosya başarıyla silindi");
 
+                    closeSession(fileId);
+
                     // Ensure file is removed from list (in case optimistic update failed)
                     for (int i = 0; i < listModel.size(); i++) {
                         FileDisplayItem item = listModel.getElementAt(i);
@@ -923,9 +1106,6 @@ public class MainWindow extends JFrame {
                             "Silme Başarılı",
                             JOptionPane.INFORMATION_MESSAGE);
 
-                    // Refresh file list to ensure consistency
-                    scheduleFileListRefresh();
-
                 } else {
                     // 🔧 FAILURE: Show error and restore file to list if needed
                     String errorMsg = responseMessage != null ? responseMessage : "Bilinmeyen hata";
@@ -937,7 +1117,7 @@ public class MainWindow extends JFrame {
                     showError("Dosya silinemedi: " + errorMsg);
 
                     // Restore file list (in case optimistic update removed it)
-                    scheduleFileListRefresh();
+                    requestDocumentList();
                 }
 
             } catch (Exception e) {
@@ -952,67 +1132,16 @@ public class MainWindow extends JFrame {
     }
 
     /**
-     * 🔧 NEW: Helper method to refresh file list (if not already exists)
+     * İstek future'ının hata nedenini durum satırı için kısaltır
      */
-    private void scheduleFileListRefresh() {
-        javax.swing.Timer refreshTimer = new javax.swing.Timer(500, e -> {
-            System.out.println("DEBUG: Scheduled file list refresh");
-            networkManager.forceFileListRefresh();
-        });
-        refreshTimer.setRepeats(false);
-        refreshTimer.start();
-    }
-
-    /**
-     * 🔧 Enhanced DocumentListener with better thread safety
-     */
-    private void setupEnhancedDocumentListener() {
-        editorPane.getDocument().addDocumentListener(new DocumentListener() {
-            @Override
-            public void insertUpdate(DocumentEvent e) {
-                System.out.println("DEBUG: DocumentListener.insertUpdate - " +
-                        "isUpdatingFromServer: " + isUpdatingFromServer +
-                        ", isProcessingTextChange: " + isProcessingTextChange);
-
-                if (!isUpdatingFromServer && !isProcessingTextChange) {
-                    // Use SwingUtilities.invokeLater to ensure proper EDT handling
-                    SwingUtilities.invokeLater(() -> {
-                        try {
-                            Thread.sleep(50); // Small delay to ensure all updates are complete
-                        } catch (InterruptedException ex) {}
-                        handleTextChange();
-                    });
-                } else {
-                    System.out.println("DEBUG: Skipping handleTextChange - server update or processing");
-                }
-            }
-
-            @Override
-            public void removeUpdate(DocumentEvent e) {
-                System.out.println("DEBUG: DocumentListener.removeUpdate - " +
-                        "isUpdatingFromServer: " + isUpdatingFromServer +
-                        ", isProcessingTextChange: " + isProcessingTextChange);
-
-                if (!isUpdatingFromServer && !isProcessingTextChange) {
-                    SwingUtilities.invokeLater(() -> {
-                        try {
-                            Thread.sleep(50); // Small delay for stability
-                        } catch (InterruptedException ex) {}
-                        handleTextChange();
-                    });
-                } else {
-                    System.out.println("DEBUG: Skipping handleTextChange - server update or processing");
-                }
-            }
-
-            @Override
-            public void changedUpdate(DocumentEvent e) {
-                // Style changes - not relevant for content synchronization
-                System.out.println("DEBUG: DocumentListener.changedUpdate (style change)");
-            }
-        });
-
-        System.out.println("DEBUG: Enhanced DocumentListener setup completed");
+    private static String describeFailure(Throwable error) {
+        Throwable cause = error instanceof java.util.concurrent.CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        if (cause instanceof java.util.concurrent.TimeoutException) {
+            return "sunucu yanıt vermedi";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
     }
 
     private void handleError(String errorMessage) {
@@ -1046,20 +1175,16 @@ public class MainWindow extends JFrame {
             // Show loading status
             statusLabel.setText("📋 Doküman listesi yenileniyor...");
 
-            // Send request through NetworkManager
-            networkManager.requestFileList();
-
-            System.out.println("DEBUG: File list request sent successfully through NetworkManager");
-
-            // Set timeout for request
-            javax.swing.Timer timeoutTimer = new javax.swing.Timer(10000, e -> {
-                if (statusLabel.getText().contains("yenileniyor")) {
-                    statusLabel.setText("⚠️ Liste yenileme zaman aşımı");
-                    System.out.println("WARNING: File list request timeout");
+            // Send request through NetworkManager - yanıt FILE_LIST_RESP işleyicisine de gelir
+            networkManager.requestFileList().whenComplete((list, error) -> {
+                if (error != null) {
+                    System.out.println("WARNING: File list request failed: " + error);
+                    SwingUtilities.invokeLater(
+                            () -> statusLabel.setText("⚠️ Liste yenilenemedi: " + describeFailure(error)));
                 }
             });
-            timeoutTimer.setRepeats(false);
-            timeoutTimer.start();
+
+            System.out.println("DEBUG: File list request sent successfully through NetworkManager");
 
         } catch (Exception e) {
             System.err.println("ERROR: Failed to request document list: " + e.getMessage());
@@ -1306,45 +1431,29 @@ public class MainWindow extends JFrame {
             }
         });
 
-        editorPane.getDocument().addDocumentListener(new DocumentListener() {
+        // Tek dinleyici örneği her oturumun dokümanına takılır
+        editorDocumentListener = new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
-                System.out.println("DEBUG: DocumentListener.insertUpdate - isUpdatingFromServer: " + isUpdatingFromServer);
-
-                // Server update ise işleme
+                // Server update ise işleme; olay anında işlenir, sonraki düzenlemeler konumu kaydırmadan
                 if (!isUpdatingFromServer) {
-                    // EDT kontrolü
-                    if (SwingUtilities.isEventDispatchThread()) {
-                        handleTextChange();
-                    } else {
-                        SwingUtilities.invokeLater(() -> handleTextChange());
-                    }
-                } else {
-                    System.out.println("DEBUG: Skipping handleTextChange - server update");
+                    handleLocalInsert(e);
                 }
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
-                System.out.println("DEBUG: DocumentListener.removeUpdate - isUpdatingFromServer: " + isUpdatingFromServer);
-
                 if (!isUpdatingFromServer) {
-                    if (SwingUtilities.isEventDispatchThread()) {
-                        handleTextChange();
-                    } else {
-                        SwingUtilities.invokeLater(() -> handleTextChange());
-                    }
-                } else {
-                    System.out.println("DEBUG: Skipping handleTextChange - server update");
+                    handleLocalRemove(e);
                 }
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
                 // Style değişiklikleri - space karakteri için gerekli değil
-                System.out.println("DEBUG: DocumentListener.changedUpdate (style change)");
             }
-        });
+        };
+        editorPane.getDocument().addDocumentListener(editorDocumentListener);
 
         // 🔧 SPACE DEBUG İÇİN KeyListener EKLE
         editorPane.addKeyListener(new KeyListener() {
@@ -1660,34 +1769,16 @@ public class MainWindow extends JFrame {
                 System.out.println("DEBUG: Sending create document request: " + docName);
                 statusLabel.setText("📄 Doküman oluşturuluyor: " + docName + "...");
 
-                // Send creation request
-                networkManager.createDocument(docName);
-
-                System.out.println("SUCCESS: Create document request sent");
-
-                // 🔧 OPTIONAL: Add loading indicator
-                javax.swing.Timer loadingTimer = new javax.swing.Timer(100, null);
-                loadingTimer.addActionListener(e -> {
-                    String currentText = statusLabel.getText();
-                    if (currentText.contains("...")) {
-                        statusLabel.setText(currentText.replace("...", "."));
-                    } else if (currentText.contains("..")) {
-                        statusLabel.setText(currentText.replace("..", "..."));
-                    } else if (currentText.contains(".")) {
-                        statusLabel.setText(currentText.replace(".", ".."));
+                // Send creation request - listeye ekleme FILE_CREATE işleyicisinde yapılır
+                final String requestedName = docName;
+                networkManager.createDocument(docName).whenComplete((created, error) -> {
+                    if (error != null) {
+                        SwingUtilities.invokeLater(() -> statusLabel.setText("❌ Doküman oluşturulamadı: "
+                                + requestedName + " (" + describeFailure(error) + ")"));
                     }
                 });
-                loadingTimer.start();
 
-                // Stop loading after 5 seconds
-                javax.swing.Timer stopTimer = new javax.swing.Timer(5000, e -> {
-                    loadingTimer.stop();
-                    if (statusLabel.getText().contains("oluşturuluyor")) {
-                        statusLabel.setText("⏳ Doküman oluşturma işlemi devam ediyor...");
-                    }
-                });
-                stopTimer.setRepeats(false);
-                stopTimer.start();
+                System.out.println("SUCCESS: Create document request sent");
 
             } catch (Exception e) {
                 System.err.println("ERROR: Failed to send create document request: " + e.getMessage());
@@ -1738,52 +1829,29 @@ public class MainWindow extends JFrame {
     }
 
     private void handleSaveDocument() {
-        FileDisplayItem selected = documentList.getSelectedValue();
-        if (selected != null) {
-            String fileId = selected.getFileId();
-            String content = editorPane.getText();
-            networkManager.updateDocument(fileId, content);
-            statusLabel.setText("Dosya kaydediliyor: " + selected.getFileName());
+        DocumentSession session = activeSession;
+        if (session != null) {
+            // Sunucu metni düzenlemelerden zaten biliyor; sadece SAVE gönderilir
+            String fileName = session.getFileName();
+            statusLabel.setText("Dosya kaydediliyor: " + fileName);
+            networkManager.saveDocument(session.getFileId()).whenComplete((reply, error) ->
+                    SwingUtilities.invokeLater(() -> statusLabel.setText(error == null
+                            ? "💾 Dosya kaydedildi: " + fileName
+                            : "❌ Kaydetme hatası: " + fileName + " (" + describeFailure(error) + ")")));
         } else {
             showError("Lütfen bir doküman seçin!");
         }
     }
 
-    private boolean containsTurkishCharacters(String text) {
-        return text.matches(".*[çÇğĞıİöÖşŞüÜ].*");
-    }
-
-    private int findInsertPosition(String oldText, String newText) {
-        if (oldText.isEmpty()) {
-            System.out.println("DEBUG: findInsertPosition - oldText empty, returning 0");
-            return 0;
-        }
-
-        // En uzun ortak prefix'i bul
-        int commonPrefixLength = 0;
-        int minLength = Math.min(oldText.length(), newText.length());
-
-        for (int i = 0; i < minLength; i++) {
-            if (oldText.charAt(i) == newText.charAt(i)) {
-                commonPrefixLength++;
-            } else {
-                break;
+    private boolean containsTurkishCharacters(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if ("çÇğĞıİöÖşŞüÜ".indexOf(text.charAt(i)) >= 0) {
+                return true;
             }
         }
-
-        System.out.println("DEBUG: findInsertPosition - common prefix length: " + commonPrefixLength);
-
-        // Pozisyon debug
-        if (commonPrefixLength > 0) {
-            char lastCommonChar = oldText.charAt(commonPrefixLength - 1);
-            System.out.println("DEBUG: Last common character: '" +
-                    (lastCommonChar == '\n' ? "NEWLINE" : String.valueOf(lastCommonChar)) + "'");
-        }
-
-        return commonPrefixLength;
+        return false;
     }
 
-
     private void handleTurkishCharacterError(int position, int length) {
         SwingUtilities.invokeLater(() -> {
             try {
@@ -0,0 +1,30 @@
+package org.multiuserwordeditor.ui;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+
+/**
+ * - Bir doküman oturumunun metni; uzak düzenlemelerin bir karedeki tamamı
+ *   tek yazma kilidi altında uygulanır
+ * - AbstractDocument'in yazma kilidi aynı thread için yeniden girilebilir olduğundan
+ *   içerideki insertString/remove çağrıları kilidi tekrar alabilir
+ * - Yarım uygulanmış bir kareyi sadece okuma kilidini alan okuyucular görmez
+ *   (render() / readLock(), ör. DocumentSession.getText); çıplak getText kilit almaz
+ */
+class SessionDocument extends DefaultStyledDocument {
+    private static final long serialVersionUID = 1L;
+
+    @FunctionalInterface
+    interface Edits {
+        void apply() throws BadLocationException;
+    }
+
+    void applyLocked(Edits edits) throws BadLocationException {
+        writeLock();
+        try {
+            edits.apply();
+        } finally {
+            writeUnlock();
+        }
+    }
+}
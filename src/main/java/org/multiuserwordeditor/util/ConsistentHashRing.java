@@ -0,0 +1,79 @@
+package org.multiuserwordeditor.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * - Tutarlı karma (consistent hashing) halkası: anahtarı halkada saat yönünde
+ *   ilk düğüme eşler
+ * - Her düğüm halkaya virtualNodes kez yerleşir; düğüm eklenip çıkarıldığında
+ *   anahtarların sadece ~1/n'i yer değiştirir
+ * - Karma MD5'in ilk 8 baytıdır; tüm istemciler aynı eşlemeyi hesaplar
+ */
+public final class ConsistentHashRing<T> {
+    private final int virtualNodes;
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+    private final List<T> nodes = new ArrayList<>();
+
+    public ConsistentHashRing(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+
+    /**
+     * Düğümü ekler; halkadaki konumları düğümün toString() değerinden hesaplanır
+     */
+    public synchronized void add(T node) {
+        if (nodes.contains(node)) {
+            return;
+        }
+        nodes.add(node);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(node + "#" + i), node);
+        }
+    }
+
+    public synchronized void remove(T node) {
+        if (nodes.remove(node)) {
+            ring.values().removeIf(node::equals);
+        }
+    }
+
+    /**
+     * @return anahtarın düğümü, halka boşsa null
+     */
+    public synchronized T get(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /** Eklenme sırasıyla düğümler */
+    public synchronized List<T> getNodes() {
+        return Collections.unmodifiableList(new ArrayList<>(nodes));
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xff);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
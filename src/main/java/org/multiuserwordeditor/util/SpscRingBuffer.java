@@ -0,0 +1,161 @@
+package org.multiuserwordeditor.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * - Tek üretici / tek tüketici, kilitsiz, sabit boyutlu halka tampon
+ * - Üretici (WebSocket okuma thread'i) put() ile ekler, tüketici (EDT) drainTo()
+ *   ile biriken tüm elemanları tek seferde alır
+ * - Her eleman kuyruğa giriş zamanıyla saklanır; boşaltma başına parti boyutu
+ *   ve kuyrukta bekleme süresi ölçülür
+ */
+public final class SpscRingBuffer<T> {
+    // Tampon doluyken üreticinin tüketiciyi beklerken uyuduğu süre
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Object[] items;
+    private final long[] enqueuedNanos;
+    private final int mask;
+
+    // Sadece üretici yazar / sadece tüketici yazar; diğer taraf okur
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // Göstergeler (tüketici yazar)
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong totalLagNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    private final AtomicLong producerWaits = new AtomicLong();
+
+    /**
+     * @param capacity 2'nin kuvvetine yuvarlanır
+     */
+    public SpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.items = new Object[size];
+        this.enqueuedNanos = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Yer varsa ekler; tampon doluysa false döner (sadece üretici çağırır)
+     */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() >= items.length) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        items[slot] = item;
+        enqueuedNanos[slot] = System.nanoTime();
+        tail.lazySet(t + 1); // eleman yazıldıktan sonra görünür olur
+        return true;
+    }
+
+    /**
+     * Tampon doluysa tüketici yer açana kadar bekler; EDT'nin kuyruğu sınırsız
+     * büyümek yerine soket okuması yavaşlar (sadece üretici çağırır)
+     */
+    public void put(T item) {
+        if (offer(item)) {
+            return;
+        }
+        producerWaits.incrementAndGet();
+        while (!offer(item)) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Biriken elemanları (en fazla maxItems) sırayla sink'e verir (sadece tüketici çağırır)
+     *
+     * @return alınan eleman sayısı
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Consumer<T> sink, int maxItems) {
+        long h = head.get();
+        long available = Math.min(tail.get() - h, maxItems);
+        if (available <= 0) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        long oldestLag = now - enqueuedNanos[(int) h & mask];
+        for (long i = 0; i < available; i++) {
+            int slot = (int) (h + i) & mask;
+            T item = (T) items[slot];
+            items[slot] = null;
+            totalLagNanos.addAndGet(now - enqueuedNanos[slot]);
+            sink.accept(item);
+        }
+        head.lazySet(h + available);
+
+        int count = (int) available;
+        batches.incrementAndGet();
+        drained.addAndGet(count);
+        lastBatchSize = count;
+        maxBatchSize = Math.max(maxBatchSize, count);
+        lastLagNanos = oldestLag;
+        maxLagNanos = Math.max(maxLagNanos, oldestLag);
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    // ---------------------------------------------------------------- göstergeler
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) drained.get() / count;
+    }
+
+    /** Son partideki en eski elemanın kuyrukta beklediği süre */
+    public long getLastLagMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(lastLagNanos);
+    }
+
+    public long getAverageLagMicros() {
+        long count = drained.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLagNanos.get() / count);
+    }
+
+    public long getMaxLagMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLagNanos);
+    }
+
+    /** Tampon dolu olduğu için üreticinin beklemek zorunda kaldığı put() sayısı */
+    public long getProducerWaits() {
+        return producerWaits.get();
+    }
+
+    public String summary() {
+        return String.format("%d items in %d batches (avg %.1f, max %d), lag avg %dus max %dus, producer waits %d",
+                drained.get(), batches.get(), getAverageBatchSize(), getMaxBatchSize(), getAverageLagMicros(),
+                getMaxLagMicros(), getProducerWaits());
+    }
+}